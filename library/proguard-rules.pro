@@ -15,3 +15,8 @@
 #-keepclassmembers class fqcn.of.javascript.interface.for.webview {
 #   public *;
 #}
+
+# generated code of com.fairysword.hanoi.generated.Generate, the registry is loaded by name
+-keep class com.fairysword.hanoi.generated.HanoiGeneratedRegistry { <init>(); }
+-keep class **$$HanoiCopier
+-keep class **$$HanoiSedes
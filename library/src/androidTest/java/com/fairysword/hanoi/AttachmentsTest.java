@@ -0,0 +1,79 @@
+package com.fairysword.hanoi;
+
+import junit.framework.TestCase;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * large arrays and buffers leave only their handles in the payload, in process round trips
+ */
+public class AttachmentsTest extends TestCase {
+
+    public static class Blob {
+        String name;
+        byte[] bytes;
+        int[] ints;
+        short[] small;
+        ByteBuffer buffer;
+    }
+
+    private static Blob blob() {
+        Blob blob = new Blob();
+        blob.name = "blob";
+        blob.bytes = new byte[64 * 1024];
+        blob.ints = new int[16 * 1024];
+        for (int i = 0; i < blob.ints.length; i++) {
+            blob.bytes[i] = (byte) i;
+            blob.ints[i] = i * 31;
+        }
+        blob.small = new short[]{1, 2, 3};
+        blob.buffer = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+        blob.buffer.putInt(0, 7).putInt(4, 8).putInt(8, 9);
+        return blob;
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Sedes.setAttachmentThreshold(16 * 1024);
+        super.tearDown();
+    }
+
+    public void testRoundTrip() throws Exception {
+        Blob blob = blob();
+        Attachments attachments = new Attachments();
+        byte[] payload = Sedes.serialize(blob, attachments);
+
+        assertEquals(3, attachments.size()); // the small array stays inline
+        assertTrue(payload.length < 1024);
+        assertTrue(attachments.byteCount() >= blob.bytes.length + 4L * blob.ints.length);
+
+        Blob copy = (Blob) Sedes.deserialize(payload, attachments);
+        assertEquals("blob", copy.name);
+        assertTrue(Arrays.equals(blob.bytes, copy.bytes));
+        assertTrue(Arrays.equals(blob.ints, copy.ints));
+        assertTrue(Arrays.equals(blob.small, copy.small));
+        assertTrue(copy.buffer.isReadOnly());
+        assertEquals(ByteOrder.LITTLE_ENDIAN, copy.buffer.order());
+        assertEquals(9, copy.buffer.getInt(8));
+    }
+
+    public void testThreshold() throws Exception {
+        Sedes.setAttachmentThreshold(Integer.MAX_VALUE);
+        Attachments attachments = new Attachments();
+        Blob copy = (Blob) Sedes.deserialize(Sedes.serialize(blob(), attachments), attachments);
+        assertEquals(1, attachments.size()); // buffers are always attached
+        assertEquals(31 * 100, copy.ints[100]);
+    }
+
+    public void testMissingAttachments() throws Exception {
+        byte[] payload = Sedes.serialize(blob(), new Attachments());
+        try {
+            Sedes.deserialize(payload);
+            fail("read without its attachments");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+}
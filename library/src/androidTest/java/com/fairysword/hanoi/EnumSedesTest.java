@@ -0,0 +1,120 @@
+package com.fairysword.hanoi;
+
+import android.os.Parcel;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * enum constants are written as their ordinal and registered singletons by class, both read back as the
+ * same instance. payloads written before ordinals still read
+ */
+public class EnumSedesTest extends TestCase {
+
+    public enum Color {
+        RED,
+        GREEN {
+            @Override
+            String label() {
+                return "green";
+            }
+        },
+        BLUE;
+
+        String label() {
+            return name();
+        }
+    }
+
+    public static class Theme {
+        public static final Theme DEFAULT = new Theme();
+        String name = "default";
+    }
+
+    public static class Holder {
+        Color color;
+        Theme theme;
+        List<Object> items = new ArrayList<>();
+    }
+
+    public void testRoundTrip() throws Exception {
+        Sedes.registerSingleton(Theme.DEFAULT);
+        Holder holder = new Holder();
+        holder.color = Color.GREEN;
+        holder.theme = Theme.DEFAULT;
+        holder.items.add(Color.RED);
+        holder.items.add(Color.BLUE);
+        holder.items.add(null);
+
+        Holder copy = (Holder) Sedes.deserialize(Sedes.serialize(holder));
+        assertSame(Color.GREEN, copy.color);
+        assertSame(Theme.DEFAULT, copy.theme);
+        assertEquals(3, copy.items.size());
+        assertSame(Color.RED, copy.items.get(0));
+        assertSame(Color.BLUE, copy.items.get(1));
+        assertNull(copy.items.get(2));
+    }
+
+    public void testEnumKeys() throws Exception {
+        Map<Color, Integer> map = new HashMap<>();
+        for (Color color : Color.values()) {
+            map.put(color, color.ordinal());
+        }
+        @SuppressWarnings("unchecked")
+        Map<Color, Integer> copy = (Map<Color, Integer>) Sedes.deserialize(Sedes.serialize(map));
+        assertEquals(map, copy);
+        assertSame(Color.GREEN, Sedes.deserialize(Sedes.serialize(Color.GREEN)));
+    }
+
+    public void testIndexedEnumKeys() throws Exception {
+        Sedes.setIndexedContainers(2);
+        try {
+            Map<Color, String> map = new HashMap<>();
+            for (Color color : Color.values()) {
+                map.put(color, color.label());
+            }
+            IndexedReader reader = new IndexedReader(Sedes.serialize(map));
+            try {
+                assertTrue(reader.isMap());
+                assertEquals("green", reader.get(Color.GREEN));
+                assertEquals("BLUE", reader.get(Color.BLUE));
+            } finally {
+                reader.recycle();
+            }
+        } finally {
+            Sedes.setIndexedContainers(0);
+        }
+    }
+
+    public void testLegacyPayload() throws Exception {
+        assertSame(Color.BLUE, Sedes.deserialize(legacyEnum(Color.class, "BLUE", 2)));
+        // a constant with a body was written under its anonymous class
+        assertSame(Color.GREEN, Sedes.deserialize(legacyEnum(Color.GREEN.getClass(), "GREEN", 1)));
+    }
+
+    /**
+     * the format before ordinals, the type, the presence, then each field by name and type
+     */
+    private static byte[] legacyEnum(Class<?> type, String name, int ordinal) {
+        Parcel p = Parcel.obtain();
+        try {
+            p.writeString(type.getName());
+            p.writeInt(1);
+            p.writeString("ordinal");
+            p.writeString(Integer.class.getName());
+            p.writeInt(1);
+            p.writeInt(ordinal);
+            p.writeString("name");
+            p.writeString(String.class.getName());
+            p.writeInt(1);
+            p.writeString(name);
+            return p.marshall();
+        } finally {
+            p.recycle();
+        }
+    }
+}
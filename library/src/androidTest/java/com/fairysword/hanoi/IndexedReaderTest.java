@@ -0,0 +1,98 @@
+package com.fairysword.hanoi;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * indexed containers read in full by deserialize, and one element at a time by {@link IndexedReader}
+ */
+public class IndexedReaderTest extends TestCase {
+
+    public static class Entry {
+        String name;
+        int id;
+    }
+
+    private static Entry entry(int id) {
+        Entry entry = new Entry();
+        entry.name = "entry" + id;
+        entry.id = id;
+        return entry;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        Sedes.setIndexedContainers(4);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Sedes.setIndexedContainers(0);
+        super.tearDown();
+    }
+
+    public void testListByPosition() throws Exception {
+        List<Entry> list = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            list.add(entry(i));
+        }
+        byte[] bytes = Sedes.serialize(list);
+
+        IndexedReader reader = new IndexedReader(bytes);
+        try {
+            assertFalse(reader.isMap());
+            assertEquals(50, reader.size());
+            assertEquals(37, ((Entry) reader.get(37)).id);
+            assertEquals("entry0", ((Entry) reader.get(0)).name);
+        } finally {
+            reader.recycle();
+        }
+
+        @SuppressWarnings("unchecked")
+        List<Entry> copy = (List<Entry>) Sedes.deserialize(bytes);
+        assertEquals(50, copy.size());
+        assertEquals(49, copy.get(49).id);
+    }
+
+    public void testMapByKey() throws Exception {
+        Map<Object, Entry> map = new HashMap<>();
+        for (int i = 0; i < 40; i++) {
+            map.put("key" + i, entry(i));
+        }
+        map.put(7L, entry(100));
+        byte[] bytes = Sedes.serialize(map);
+
+        IndexedReader reader = new IndexedReader(bytes);
+        try {
+            assertTrue(reader.isMap());
+            assertEquals(41, reader.size());
+            assertEquals(12, ((Entry) reader.get("key12")).id);
+            assertEquals(100, ((Entry) reader.get(7L)).id);
+            assertNull(reader.get("missing"));
+            assertFalse(reader.containsKey(8L));
+        } finally {
+            reader.recycle();
+        }
+
+        @SuppressWarnings("unchecked")
+        Map<Object, Entry> copy = (Map<Object, Entry>) Sedes.deserialize(bytes);
+        assertEquals(41, copy.size());
+        assertEquals(39, copy.get("key39").id);
+    }
+
+    public void testSmallContainersStayPlain() throws Exception {
+        List<Entry> list = new ArrayList<>();
+        list.add(entry(1));
+        try {
+            new IndexedReader(Sedes.serialize(list));
+            fail("a container below the min size is not indexed");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+}
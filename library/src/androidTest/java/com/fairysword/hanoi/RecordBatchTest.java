@@ -0,0 +1,91 @@
+package com.fairysword.hanoi;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * write many records into one batch and read them back, skipping some
+ */
+public class RecordBatchTest extends TestCase {
+
+    public static class Record {
+        String name;
+        int id;
+        List<String> tags = new ArrayList<>();
+    }
+
+    public static class Other {
+        double value;
+    }
+
+    private static Record record(int id) {
+        Record record = new Record();
+        record.name = "record" + id;
+        record.id = id;
+        record.tags.add("tag" + id);
+        return record;
+    }
+
+    public void testRoundTrip() throws Exception {
+        RecordBatchWriter writer = new RecordBatchWriter();
+        for (int i = 0; i < 10; i++) {
+            writer.write(record(i));
+        }
+        Other other = new Other();
+        other.value = 2.5;
+        writer.write(other);
+        writer.write(null);
+        assertEquals(12, writer.size());
+        byte[] bytes = writer.finish();
+
+        RecordBatchReader reader = new RecordBatchReader(bytes);
+        try {
+            assertEquals(12, reader.size());
+            for (int i = 0; i < 10; i++) {
+                Record record = (Record) reader.next();
+                assertEquals(i, record.id);
+                assertEquals("record" + i, record.name);
+                assertEquals("tag" + i, record.tags.get(0));
+            }
+            assertEquals(2.5, ((Other) reader.next()).value, 0);
+            assertNull(reader.next());
+            assertFalse(reader.hasNext());
+        } finally {
+            reader.recycle();
+        }
+    }
+
+    public void testSkip() throws Exception {
+        RecordBatchWriter writer = new RecordBatchWriter();
+        for (int i = 0; i < 5; i++) {
+            writer.write(record(i));
+        }
+        RecordBatchReader reader = new RecordBatchReader(writer.finish());
+        try {
+            reader.skip();
+            reader.skip();
+            assertEquals(2, ((Record) reader.next()).id);
+            reader.skip();
+            assertEquals(4, ((Record) reader.next()).id);
+            try {
+                reader.skip();
+                fail("skipped past the last record");
+            } catch (NoSuchElementException expected) {
+            }
+        } finally {
+            reader.recycle();
+        }
+    }
+
+    public void testRejectsSinglePayload() throws Exception {
+        try {
+            new RecordBatchReader(Sedes.serialize(record(1)));
+            fail("a single payload is not a batch");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+}
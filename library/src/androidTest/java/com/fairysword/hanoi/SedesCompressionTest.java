@@ -0,0 +1,64 @@
+package com.fairysword.hanoi;
+
+import com.fairysword.hanoi.codec.CompressedFrames;
+import com.fairysword.hanoi.codec.DeflateCodec;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * serialize with compression and read back both compressed and raw payloads
+ */
+public class SedesCompressionTest extends TestCase {
+
+    public static class Item {
+        String name;
+        int count;
+        List<Item> children = new ArrayList<>();
+    }
+
+    private static Item item(int children) {
+        Item root = new Item();
+        root.name = "root";
+        for (int i = 0; i < children; i++) {
+            Item child = new Item();
+            child.name = "child";
+            child.count = i;
+            root.children.add(child);
+        }
+        return root;
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Sedes.setCompression(null, 0);
+        super.tearDown();
+    }
+
+    public void testCompressedRoundTrip() throws Exception {
+        byte[] raw = Sedes.serialize(item(100));
+        Sedes.setCompression(new DeflateCodec(), 1024);
+        byte[] compressed = Sedes.serialize(item(100));
+
+        assertTrue(CompressedFrames.isCompressed(compressed));
+        assertTrue(compressed.length < raw.length);
+        Item copy = (Item) Sedes.deserialize(compressed);
+        assertEquals(100, copy.children.size());
+        assertEquals("child", copy.children.get(99).name);
+        assertEquals(99, copy.children.get(99).count);
+
+        // raw payloads are still read while compression is on
+        assertEquals(100, ((Item) Sedes.deserialize(raw)).children.size());
+    }
+
+    public void testSmallPayloadStaysRaw() throws Exception {
+        Sedes.setCompression(new DeflateCodec(), 1 << 20);
+        byte[] bytes = Sedes.serialize(item(1));
+
+        assertFalse(CompressedFrames.isCompressed(bytes));
+        assertEquals("root", ((Item) Sedes.deserialize(bytes)).name);
+    }
+
+}
@@ -0,0 +1,112 @@
+package com.fairysword.hanoi;
+
+import android.os.Parcel;
+
+import com.fairysword.hanoi.generated.Generated;
+import com.fairysword.hanoi.generated.GeneratedCopier;
+import com.fairysword.hanoi.generated.GeneratedRegistry;
+import com.fairysword.hanoi.generated.GeneratedSedes;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * the inline cache of a field or container sees other classes than the one it remembers, and a registry added
+ * after the first payload replaces the cached dispatch of its classes
+ */
+public class SedesDispatchTest extends TestCase {
+
+    public enum Color {
+        RED, GREEN
+    }
+
+    public static class Holder {
+        Object value;
+    }
+
+    public static class Node {
+        String name;
+    }
+
+    public static class Late {
+        int x;
+        boolean generated;
+    }
+
+    public static class LateSedes implements GeneratedSedes<Late> {
+        @Override
+        public void write(Parcel p, Late value, ValueWriter writer) {
+            p.writeInt(value.x);
+        }
+
+        @Override
+        public Late read(Parcel p, ValueReader reader) {
+            Late late = new Late();
+            late.x = p.readInt();
+            late.generated = true;
+            return late;
+        }
+    }
+
+    private static Node node(String name) {
+        Node node = new Node();
+        node.name = name;
+        return node;
+    }
+
+    private static List<Object> mixed() {
+        List<Object> values = new ArrayList<>();
+        values.add(node("a"));
+        values.add("text");
+        values.add(Color.GREEN);
+        values.add(new int[]{1, 2});
+        values.add(node("b"));
+        values.add(new ArrayList<>(Arrays.asList(node("c"), "d")));
+        values.add(Color.RED);
+        values.add(null);
+        values.add(7L);
+        return values;
+    }
+
+    public void testPolymorphicContainer() throws Exception {
+        List<Object> original = mixed();
+        Object copy = Sedes.deserialize(Sedes.serialize(original));
+
+        assertTrue(Jock.getInstance().deepEquals(original, copy));
+    }
+
+    public void testPolymorphicField() throws Exception {
+        List<Holder> original = new ArrayList<>();
+        for (Object value : mixed()) {
+            Holder holder = new Holder();
+            holder.value = value;
+            original.add(holder);
+        }
+        @SuppressWarnings("unchecked")
+        List<Holder> copy = (List<Holder>) Sedes.deserialize(Sedes.serialize(original));
+
+        assertTrue(Jock.getInstance().deepEquals(original, copy));
+        assertSame(Color.GREEN, copy.get(2).value);
+    }
+
+    public void testRegisteredAfterFirstPayload() throws Exception {
+        Late original = new Late();
+        original.x = 5;
+        assertFalse(((Late) Sedes.deserialize(Sedes.serialize(original))).generated);
+
+        Generated.register(new GeneratedRegistry() {
+            @Override
+            public void register(Map<Class<?>, GeneratedCopier<?>> copiers, Map<Class<?>, GeneratedSedes<?>> sedes) {
+                sedes.put(Late.class, new LateSedes());
+            }
+        });
+
+        Late copy = (Late) Sedes.deserialize(Sedes.serialize(original));
+        assertTrue(copy.generated);
+        assertEquals(5, copy.x);
+    }
+}
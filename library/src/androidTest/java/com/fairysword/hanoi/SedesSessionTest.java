@@ -0,0 +1,64 @@
+package com.fairysword.hanoi;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * reusable writer and reader sessions, interchangeable with the static Sedes calls
+ */
+public class SedesSessionTest extends TestCase {
+
+    public static class Message {
+        String text;
+        int sequence;
+        List<String> tags = new ArrayList<>();
+    }
+
+    private static Message message(int sequence) {
+        Message message = new Message();
+        message.text = "message" + sequence;
+        message.sequence = sequence;
+        message.tags.add("tag" + sequence % 3);
+        return message;
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Sedes.setStringTable(false);
+        super.tearDown();
+    }
+
+    public void testSessionsMatchSedes() throws Exception {
+        checkSessions();
+    }
+
+    public void testSessionsMatchSedesWithStringTable() throws Exception {
+        Sedes.setStringTable(true);
+        checkSessions();
+    }
+
+    private void checkSessions() throws Exception {
+        SedesWriter writer = new SedesWriter();
+        SedesReader reader = new SedesReader();
+        try {
+            for (int i = 0; i < 20; i++) {
+                byte[] bytes = writer.write(message(i));
+                assertTrue(Arrays.equals(Sedes.serialize(message(i)), bytes));
+
+                Message copy = (Message) reader.read(bytes);
+                assertEquals(i, copy.sequence);
+                assertEquals("message" + i, copy.text);
+                assertEquals("tag" + i % 3, copy.tags.get(0));
+                assertEquals(i, ((Message) Sedes.deserialize(bytes)).sequence);
+            }
+            assertNull(reader.read(writer.write(null)));
+        } finally {
+            writer.recycle();
+            reader.recycle();
+        }
+    }
+
+}
@@ -0,0 +1,229 @@
+package com.fairysword.hanoi;
+
+import android.os.Parcel;
+
+import junit.framework.TestCase;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * serialize and deserialize through a real {@link android.os.Parcel}, so it runs on a device
+ */
+public class SedesTest extends TestCase {
+
+    public static class Item {
+        String name;
+        int count;
+        double weight;
+        boolean flag;
+        char letter = 'h';
+        long[] samples = new long[]{1, 2, 3};
+        Object any;
+        List<Item> children = new ArrayList<>();
+        Map<String, Integer> counts = new HashMap<>();
+    }
+
+    public static class ShapeV1 {
+        int x;
+        String label;
+        long count;
+        Object gone;
+    }
+
+    /**
+     * ShapeV1 as a later version of the class, read from payloads of ShapeV1
+     */
+    public static class ShapeV2 {
+        int x;
+        Object label;
+        int count;
+        String extra;
+    }
+
+    public static class PackedV1 {
+        short s1 = -2;
+        short s2 = Short.MAX_VALUE;
+        short s3 = Short.MIN_VALUE;
+        char c = '\uffff';
+        byte b1 = -1;
+        byte b2 = Byte.MIN_VALUE;
+        boolean z1 = true;
+        boolean z2;
+        boolean z3 = true;
+        boolean z4 = true;
+        boolean z5 = true;
+        int i = 11;
+        long l = -12;
+        float f = 1.25f;
+    }
+
+    /**
+     * PackedV1 without two of its small fields, read from payloads of PackedV1
+     */
+    public static class PackedV2 {
+        short s1;
+        short s3;
+        char c;
+        byte b2;
+        boolean z1;
+        boolean z3;
+        boolean z5;
+        int i;
+        long l;
+        float f;
+    }
+
+    public static class Legacy {
+        int x;
+        String label;
+    }
+
+    private static Item item(int children) {
+        Item root = new Item();
+        root.name = "root";
+        root.count = children;
+        root.weight = 1.5;
+        root.flag = true;
+        root.any = "polymorphic";
+        for (int i = 0; i < children; i++) {
+            Item child = new Item();
+            child.name = "child" + i;
+            child.count = i;
+            child.any = i;
+            child.counts.put("c" + i, i);
+            root.children.add(child);
+        }
+        return root;
+    }
+
+    public void testRoundTrip() throws Exception {
+        Item original = item(4);
+        Object copy = Sedes.deserialize(Sedes.serialize(original));
+
+        assertNotSame(original, copy);
+        assertTrue(Jock.getInstance().deepEquals(original, copy));
+    }
+
+    public void testRoundTripAfterGrowth() throws Exception {
+        Sedes.serialize(item(1));
+        Item original = item(200);
+        Object copy = Sedes.deserialize(Sedes.serialize(original));
+
+        assertTrue(Jock.getInstance().deepEquals(original, copy));
+    }
+
+    public void testRoundTripNull() throws Exception {
+        assertNull(Sedes.deserialize(Sedes.serialize(null)));
+    }
+
+    public void testFieldsChangedSinceWritten() throws Exception {
+        ShapeV1 shape = new ShapeV1();
+        shape.x = 7;
+        shape.label = "label";
+        shape.count = 1L << 40;
+        shape.gone = "gone";
+        byte[] payload = Sedes.serialize(shape);
+        replace(payload, utf16(ShapeV1.class.getName()), utf16(ShapeV2.class.getName()));
+
+        ShapeV2 copy = (ShapeV2) Sedes.deserialize(payload);
+        assertEquals(7, copy.x);
+        assertEquals("label", copy.label); // widened, still fits
+        assertEquals(0, copy.count); // long to int, dropped
+        assertNull(copy.extra);
+    }
+
+    public void testPackedPrimitives() throws Exception {
+        PackedV1 original = new PackedV1();
+        original.z2 = true;
+        original.z4 = false;
+        Object copy = Sedes.deserialize(Sedes.serialize(original));
+
+        assertTrue(Jock.getInstance().deepEquals(original, copy));
+    }
+
+    public void testPackedPrimitivesChangedSinceWritten() throws Exception {
+        byte[] payload = Sedes.serialize(new PackedV1());
+        replace(payload, utf16(PackedV1.class.getName()), utf16(PackedV2.class.getName()));
+
+        PackedV2 copy = (PackedV2) Sedes.deserialize(payload);
+        assertEquals(-2, copy.s1);
+        assertEquals(Short.MIN_VALUE, copy.s3);
+        assertEquals('\uffff', copy.c);
+        assertEquals(Byte.MIN_VALUE, copy.b2);
+        assertTrue(copy.z1);
+        assertTrue(copy.z3);
+        assertTrue(copy.z5);
+        assertEquals(11, copy.i);
+        assertEquals(-12, copy.l);
+        assertEquals(1.25f, copy.f);
+    }
+
+    public void testRejectsUnknownEncoding() throws Exception {
+        byte[] payload = Sedes.serialize(new ShapeV1());
+        // the encoding follows the declared type of the field in the layout table
+        byte[] longType = utf16("long");
+        int at = indexOf(payload, longType, 0) + longType.length + 4; // terminator and padding
+        payload[at] = 42;
+        try {
+            Sedes.deserialize(payload);
+            fail("unknown encoding read");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("42"));
+        }
+    }
+
+    public void testTaggedPayload() throws Exception {
+        // written before the payload header, every field with its name and type
+        Parcel p = Parcel.obtain();
+        byte[] payload;
+        try {
+            p.writeString(Legacy.class.getName());
+            p.writeInt(1);
+            p.writeString("label");
+            p.writeString(String.class.getName());
+            p.writeInt(1);
+            p.writeString("tagged");
+            p.writeString("x");
+            p.writeString(Integer.class.getName());
+            p.writeInt(1);
+            p.writeInt(3);
+            payload = p.marshall();
+        } finally {
+            p.recycle();
+        }
+
+        Legacy copy = (Legacy) Sedes.deserialize(payload);
+        assertEquals(3, copy.x);
+        assertEquals("tagged", copy.label);
+    }
+
+    private static byte[] utf16(String string) {
+        return string.getBytes(Charset.forName("UTF-16LE"));
+    }
+
+    private static int indexOf(byte[] bytes, byte[] part, int from) {
+        outer:
+        for (int i = from; i <= bytes.length - part.length; i++) {
+            for (int j = 0; j < part.length; j++) {
+                if (bytes[i + j] != part[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static void replace(byte[] bytes, byte[] part, byte[] replacement) {
+        int count = 0;
+        for (int i = indexOf(bytes, part, 0); i >= 0; i = indexOf(bytes, part, i + part.length)) {
+            System.arraycopy(replacement, 0, bytes, i, replacement.length);
+            count++;
+        }
+        assertTrue(count > 0);
+    }
+}
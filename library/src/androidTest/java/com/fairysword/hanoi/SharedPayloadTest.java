@@ -0,0 +1,86 @@
+package com.fairysword.hanoi;
+
+import android.os.Parcel;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * payloads in a file region, the main stream and its attachments in one mapping
+ */
+public class SharedPayloadTest extends TestCase {
+
+    public static class Blob {
+        String name;
+        long[] values;
+    }
+
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        dir = File.createTempFile("shared", "");
+        assertTrue(dir.delete() && dir.mkdir());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        File[] files = dir.listFiles();
+        for (int i = 0; files != null && i < files.length; i++) {
+            files[i].delete();
+        }
+        dir.delete();
+        super.tearDown();
+    }
+
+    private static Blob blob() {
+        Blob blob = new Blob();
+        blob.name = "blob";
+        blob.values = new long[8 * 1024];
+        for (int i = 0; i < blob.values.length; i++) {
+            blob.values[i] = i * 1000003L;
+        }
+        return blob;
+    }
+
+    public void testRegionRoundTrip() throws Exception {
+        File file = new File(dir, "region");
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+            SharedPayload.writeRegion(blob(), channel);
+            ByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            Blob copy = (Blob) SharedPayload.readRegion(region);
+            assertEquals("blob", copy.name);
+            assertTrue(Arrays.equals(blob().values, copy.values));
+        } finally {
+            raf.close();
+        }
+    }
+
+    public void testWriteLeavesNoFile() throws Exception {
+        Parcel parcel = Parcel.obtain();
+        try {
+            SharedPayload.write(parcel, blob(), dir);
+        } finally {
+            parcel.recycle();
+        }
+        assertEquals(0, dir.listFiles().length);
+    }
+
+    public void testRejectsForeignRegion() throws Exception {
+        try {
+            SharedPayload.readRegion(ByteBuffer.wrap(new byte[64]));
+            fail("not a region");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
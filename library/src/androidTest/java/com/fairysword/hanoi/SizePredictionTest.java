@@ -0,0 +1,79 @@
+package com.fairysword.hanoi;
+
+import com.fairysword.hanoi.codec.DeflateCodec;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * predicted payload sizes against the payloads actually written
+ */
+public class SizePredictionTest extends TestCase {
+
+    public enum Kind {
+        PLAIN, STARRED
+    }
+
+    public static class Record {
+        String name;
+        String note;
+        long id;
+        Kind kind;
+        Map<String, Integer> tags = new HashMap<>();
+    }
+
+    private static List<Record> records(int count) {
+        List<Record> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Record record = new Record();
+            record.name = "record" + i; // distinct, each one a new string table entry
+            record.note = i % 3 == 0 ? null : i % 3 == 1 ? "Z\u00fcrich" : "\u6771\u4eac \ud83d\ude00";
+            record.id = i;
+            record.kind = i % 2 == 0 ? Kind.PLAIN : Kind.STARRED;
+            record.tags.put("tag" + (i % 4), i);
+            records.add(record);
+        }
+        return records;
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Sedes.setStringTable(false);
+        Sedes.setCompression(null, 0);
+        super.tearDown();
+    }
+
+    public void testExactWithoutSampling() throws Exception {
+        List<Record> records = records(200);
+        assertEquals(Sedes.serialize(records).length, Sedes.predictSerializedSize(records, 1000));
+
+        Sedes.setStringTable(true);
+        assertEquals(Sedes.serialize(records).length, Sedes.predictSerializedSize(records, 1000));
+    }
+
+    public void testSampled() throws Exception {
+        List<Record> records = records(5000);
+        assertClose(Sedes.serialize(records).length, Sedes.predictSerializedSize(records));
+
+        // the table entries of the unsampled records are extrapolated
+        Sedes.setStringTable(true);
+        assertClose(Sedes.serialize(records).length, Sedes.predictSerializedSize(records));
+    }
+
+    public void testCompressedBound() throws Exception {
+        List<Record> records = records(300);
+        long raw = Sedes.predictSerializedSize(records, 1000);
+        Sedes.setCompression(new DeflateCodec(), 1024);
+        long bound = Sedes.predictSerializedSize(records, 1000);
+        assertTrue(bound > raw);
+        assertTrue(Sedes.serialize(records).length <= bound);
+    }
+
+    private static void assertClose(long actual, long predicted) {
+        assertTrue("predicted " + predicted + " for " + actual + " bytes", Math.abs(predicted - actual) <= actual / 20);
+    }
+}
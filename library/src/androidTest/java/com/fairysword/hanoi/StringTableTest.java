@@ -0,0 +1,64 @@
+package com.fairysword.hanoi;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * payloads with a per-stream string table, every distinct string is written once
+ */
+public class StringTableTest extends TestCase {
+
+    public static class Person {
+        String name;
+        String city;
+        String note;
+    }
+
+    private static List<Person> people(int count) {
+        List<Person> people = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Person person = new Person();
+            person.name = "person" + (i % 5);
+            person.city = i % 2 == 0 ? "Z\u00fcrich" : "\u6771\u4eac";
+            person.note = i % 3 == 0 ? null : "note \ud83d\ude00";
+            people.add(person);
+        }
+        return people;
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Sedes.setStringTable(false);
+        super.tearDown();
+    }
+
+    public void testRoundTrip() throws Exception {
+        Sedes.setStringTable(true);
+        @SuppressWarnings("unchecked")
+        List<Person> copy = (List<Person>) Sedes.deserialize(Sedes.serialize(people(30)));
+
+        assertEquals(30, copy.size());
+        for (int i = 0; i < copy.size(); i++) {
+            Person person = copy.get(i);
+            assertEquals("person" + (i % 5), person.name);
+            assertEquals(i % 2 == 0 ? "Z\u00fcrich" : "\u6771\u4eac", person.city);
+            assertEquals(i % 3 == 0 ? null : "note \ud83d\ude00", person.note);
+        }
+        // every reference to a table entry shares one instance
+        assertSame(copy.get(0).name, copy.get(5).name);
+        assertSame(copy.get(1).city, copy.get(3).city);
+    }
+
+    public void testRepeatedStringsShrinkPayload() throws Exception {
+        byte[] plain = Sedes.serialize(people(100));
+        Sedes.setStringTable(true);
+        byte[] tabled = Sedes.serialize(people(100));
+
+        assertTrue(tabled.length < plain.length);
+        // payloads written without the table are still read while it is on
+        assertEquals(100, ((List<?>) Sedes.deserialize(plain)).size());
+    }
+
+}
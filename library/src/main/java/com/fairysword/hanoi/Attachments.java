@@ -0,0 +1,142 @@
+package com.fairysword.hanoi;
+
+import android.os.Parcel;
+import android.os.ParcelFileDescriptor;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Large binary values of a {@link Sedes} payload kept out of the main stream, which carries only their
+ * handles. see {@link Sedes#serialize(Object, Attachments)}
+ * <p>
+ * In process the regions are slices of the original values, a large byte[] is not copied at all. Across
+ * processes {@link #writeToParcel} spills them into a file passed as a descriptor, and {@link #readFromParcel}
+ * maps that file read-only, so the parcel itself stays far below the binder transaction limit.
+ */
+public final class Attachments {
+
+    // primitive arrays are stored in the byte order of the device, both sides of a descriptor share it
+    static final ByteOrder ORDER = ByteOrder.nativeOrder();
+
+    private final List<ByteBuffer> regions = new ArrayList<>();
+
+    public Attachments() {
+    }
+
+    /**
+     * @return the number of regions
+     */
+    public int size() {
+        return regions.size();
+    }
+
+    /**
+     * @return the bytes of all regions
+     */
+    public long byteCount() {
+        long count = 0;
+        for (int i = 0; i < regions.size(); i++) {
+            count += regions.get(i).remaining();
+        }
+        return count;
+    }
+
+    /**
+     * @param region the bytes between position and limit, not copied, must not change until the payload is read
+     * @return the handle of the region
+     */
+    int add(ByteBuffer region) {
+        regions.add(region.slice());
+        return regions.size() - 1;
+    }
+
+    /**
+     * @return a read-only view of the region, in big endian order like any new buffer
+     */
+    ByteBuffer get(int handle) {
+        if (handle < 0 || handle >= regions.size()) {
+            throw new IllegalArgumentException("unknown attachment " + handle + " of " + regions.size());
+        }
+        return regions.get(handle).asReadOnlyBuffer();
+    }
+
+    /**
+     * write all regions into the file and the file as a descriptor into the parcel. the file is deleted once
+     * its descriptor is open, the region lives as long as a descriptor or a mapping of it
+     *
+     * @param dest      the parcel sent along the payload
+     * @param spillFile a new file on local storage
+     * @throws IOException
+     */
+    public void writeToParcel(Parcel dest, File spillFile) throws IOException {
+        FileOutputStream out = new FileOutputStream(spillFile);
+        try {
+            FileChannel channel = out.getChannel();
+            for (int i = 0; i < regions.size(); i++) {
+                ByteBuffer region = regions.get(i).duplicate();
+                while (region.hasRemaining()) {
+                    channel.write(region);
+                }
+            }
+        } finally {
+            out.close();
+        }
+
+        ParcelFileDescriptor descriptor = ParcelFileDescriptor.open(spillFile, ParcelFileDescriptor.MODE_READ_ONLY);
+        try {
+            if (!spillFile.delete()) {
+                spillFile.deleteOnExit();
+            }
+            dest.writeInt(regions.size());
+            for (int i = 0; i < regions.size(); i++) {
+                dest.writeInt(regions.get(i).remaining());
+            }
+            dest.writeFileDescriptor(descriptor.getFileDescriptor()); // dup'ed by the parcel
+        } finally {
+            descriptor.close();
+        }
+    }
+
+    /**
+     * map the regions written by {@link #writeToParcel}, the regions are views of the mapping and never copied
+     *
+     * @param source the parcel
+     * @return the attachments
+     * @throws IOException
+     */
+    public static Attachments readFromParcel(Parcel source) throws IOException {
+        int count = source.readInt();
+        int[] lengths = new int[count];
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            lengths[i] = source.readInt();
+            total += lengths[i];
+        }
+
+        ParcelFileDescriptor descriptor = source.readFileDescriptor();
+        Attachments attachments = new Attachments();
+        // closed through the descriptor only, closing the stream too would close the descriptor twice
+        FileInputStream in = new FileInputStream(descriptor.getFileDescriptor());
+        try {
+            ByteBuffer mapped = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, total); // outlives the descriptor
+            int offset = 0;
+            for (int i = 0; i < count; i++) {
+                mapped.limit(offset + lengths[i]).position(offset);
+                attachments.regions.add(mapped.slice());
+                offset += lengths[i];
+            }
+        } finally {
+            descriptor.close();
+        }
+        return attachments;
+    }
+
+}
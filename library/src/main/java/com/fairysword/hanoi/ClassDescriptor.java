@@ -0,0 +1,181 @@
+package com.fairysword.hanoi;
+
+import com.fairysword.hanoi.utils.ClassCache;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Flattened non-static field metadata of a class, shared by all engines. fields of subclasses come before
+ * fields of superclasses, so shadowed fields are kept and a name lookup finds the most derived field
+ */
+final class ClassDescriptor {
+
+    static final int KIND_BOOLEAN = 0;
+    static final int KIND_BYTE = 1;
+    static final int KIND_CHAR = 2;
+    static final int KIND_SHORT = 3;
+    static final int KIND_INT = 4;
+    static final int KIND_LONG = 5;
+    static final int KIND_FLOAT = 6;
+    static final int KIND_DOUBLE = 7;
+    static final int KIND_IMMUTABLE = 8;
+    static final int KIND_REFERENCE = 9;
+
+    /**
+     * final jdk classes whose instances never change
+     */
+    static final Set<Class<?>> JDK_IMMUTABLE_TYPES = Collections.unmodifiableSet(new HashSet<Class<?>>(Arrays.asList(
+            String.class, Boolean.class, Character.class, Byte.class, Short.class, Integer.class, Long.class,
+            Float.class, Double.class, BigDecimal.class, BigInteger.class, URI.class, URL.class, UUID.class,
+            Pattern.class)));
+
+    private static final Field[] EMPTY = new Field[0];
+    private static final ClassCache<ClassDescriptor> descriptors = new ClassCache<>("descriptors");
+
+    final Class<?> clazz;
+    /**
+     * all non-static fields
+     */
+    final Field[] fields;
+    final String[] names;
+    /**
+     * the KIND_ of each field
+     */
+    final int[] kinds;
+
+    final Field[] booleanFields;
+    final Field[] byteFields;
+    final Field[] charFields;
+    final Field[] shortFields;
+    final Field[] intFields;
+    final Field[] longFields;
+    final Field[] floatFields;
+    final Field[] doubleFields;
+    final Field[] immutableFields;
+    final Field[] referenceFields;
+
+    final boolean hasPrimitives;
+    final boolean hasReferences;
+
+    private ClassDescriptor(Class<?> clazz) {
+        this.clazz = clazz;
+
+        List<Field> all = new ArrayList<>();
+        for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers())) {
+                    continue;
+                }
+                if (!field.isAccessible()) {
+                    field.setAccessible(true);
+                }
+                all.add(field);
+            }
+        }
+
+        fields = all.toArray(new Field[all.size()]);
+        names = new String[fields.length];
+        kinds = new int[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            names[i] = fields[i].getName();
+            kinds[i] = kindOf(fields[i].getType());
+        }
+
+        booleanFields = fieldsOfKind(KIND_BOOLEAN);
+        byteFields = fieldsOfKind(KIND_BYTE);
+        charFields = fieldsOfKind(KIND_CHAR);
+        shortFields = fieldsOfKind(KIND_SHORT);
+        intFields = fieldsOfKind(KIND_INT);
+        longFields = fieldsOfKind(KIND_LONG);
+        floatFields = fieldsOfKind(KIND_FLOAT);
+        doubleFields = fieldsOfKind(KIND_DOUBLE);
+        immutableFields = fieldsOfKind(KIND_IMMUTABLE);
+        referenceFields = fieldsOfKind(KIND_REFERENCE);
+
+        hasReferences = immutableFields.length + referenceFields.length > 0;
+        hasPrimitives = fields.length > immutableFields.length + referenceFields.length;
+    }
+
+    /**
+     * @param clazz the class
+     * @return the cached descriptor of the class
+     */
+    static ClassDescriptor of(Class<?> clazz) {
+        ClassDescriptor descriptor = descriptors.get(clazz);
+        if (descriptor == null) {
+            descriptor = descriptors.putIfAbsent(clazz, new ClassDescriptor(clazz));
+        }
+        return descriptor;
+    }
+
+    /**
+     * @param name the field name
+     * @return the index of the most derived field with the name, or -1
+     */
+    int indexOf(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static int kindOf(Class<?> type) {
+        if (!type.isPrimitive()) {
+            // enum constants are shared, a field of an enum type never holds anything else
+            return JDK_IMMUTABLE_TYPES.contains(type) || type.isEnum() ? KIND_IMMUTABLE : KIND_REFERENCE;
+        } else if (type == Integer.TYPE) {
+            return KIND_INT;
+        } else if (type == Long.TYPE) {
+            return KIND_LONG;
+        } else if (type == Boolean.TYPE) {
+            return KIND_BOOLEAN;
+        } else if (type == Double.TYPE) {
+            return KIND_DOUBLE;
+        } else if (type == Float.TYPE) {
+            return KIND_FLOAT;
+        } else if (type == Byte.TYPE) {
+            return KIND_BYTE;
+        } else if (type == Short.TYPE) {
+            return KIND_SHORT;
+        } else {
+            return KIND_CHAR;
+        }
+    }
+
+    private Field[] fieldsOfKind(int kind) {
+        int count = 0;
+        for (int k : kinds) {
+            if (k == kind) {
+                count++;
+            }
+        }
+        if (count == 0) {
+            return EMPTY;
+        }
+
+        Field[] result = new Field[count];
+        int j = 0;
+        for (int i = 0; i < fields.length; i++) {
+            if (kinds[i] == kind) {
+                result[j++] = fields[i];
+            }
+        }
+        return result;
+    }
+
+}
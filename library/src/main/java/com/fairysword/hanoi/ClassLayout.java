@@ -0,0 +1,171 @@
+package com.fairysword.hanoi;
+
+import com.fairysword.hanoi.utils.ClassCache;
+
+import java.lang.reflect.Modifier;
+
+/**
+ * How {@link Sedes} encodes each field of a class, decided by the declared type of the field. primitives are
+ * written raw in one {@link PrimitiveBlock} ahead of the other fields, fields whose declared type fixes the
+ * runtime class are written without a type tag, only polymorphic fields carry one. the field names, declared
+ * types and encodings are written once per payload, in its layout table
+ */
+final class ClassLayout {
+
+    /**
+     * the encoding equals the {@link ClassDescriptor} kind from KIND_BOOLEAN to KIND_DOUBLE for raw primitives
+     */
+    static final int RAW_MAX = ClassDescriptor.KIND_DOUBLE;
+    /**
+     * a presence marker and the value as its declared type
+     */
+    static final int TYPED = 8;
+    /**
+     * a type tag and the value
+     */
+    static final int POLYMORPHIC = 9;
+
+    private static final ClassCache<ClassLayout> layouts = new ClassCache<>("sedes layouts");
+
+    final ClassDescriptor descriptor;
+    final int[] encodings;
+    final PrimitiveBlock block;
+    // the indices of the fields after the block
+    final int[] references;
+    // the inline cache of each field, written
+    final Sedes.DispatchSite[] sites;
+
+    private ClassLayout(ClassDescriptor descriptor) {
+        this.descriptor = descriptor;
+        encodings = new int[descriptor.fields.length];
+        for (int i = 0; i < encodings.length; i++) {
+            encodings[i] = encodingOf(descriptor.fields[i].getType());
+        }
+        block = new PrimitiveBlock(descriptor.fields, descriptor.kinds);
+        references = referencesOf(encodings);
+        sites = sitesOf(encodings);
+    }
+
+    private static Sedes.DispatchSite[] sitesOf(int[] encodings) {
+        Sedes.DispatchSite[] sites = new Sedes.DispatchSite[encodings.length];
+        for (int i = 0; i < encodings.length; i++) {
+            if (encodings[i] > RAW_MAX) {
+                sites[i] = new Sedes.DispatchSite();
+            }
+        }
+        return sites;
+    }
+
+    private static int[] referencesOf(int[] encodings) {
+        int n = 0;
+        for (int i = 0; i < encodings.length; i++) {
+            if (encodings[i] > RAW_MAX) {
+                n++;
+            }
+        }
+        int[] references = new int[n];
+        n = 0;
+        for (int i = 0; i < encodings.length; i++) {
+            if (encodings[i] > RAW_MAX) {
+                references[n++] = i;
+            }
+        }
+        return references;
+    }
+
+    static ClassLayout of(Class<?> clazz) {
+        ClassLayout layout = layouts.get(clazz);
+        if (layout == null) {
+            layout = layouts.putIfAbsent(clazz, new ClassLayout(ClassDescriptor.of(clazz)));
+        }
+        return layout;
+    }
+
+    static void clear() {
+        layouts.clear();
+    }
+
+    /**
+     * enum constants with a body are subclasses, but are written as their enum class. arrays are only fixed
+     * when their elements can not be subclasses either
+     */
+    static int encodingOf(Class<?> type) {
+        if (type.isPrimitive()) {
+            return ClassDescriptor.kindOf(type);
+        }
+        Class<?> element = type;
+        while (element.isArray()) {
+            element = element.getComponentType();
+        }
+        if (element.isPrimitive() || element.isEnum() || Modifier.isFinal(element.getModifiers())) {
+            return TYPED;
+        }
+        return POLYMORPHIC;
+    }
+
+    /**
+     * an entry of the layout table of a payload, resolved to a {@link Mapping} when an object of the class is
+     * read, so classes of objects that are never read do not have to exist
+     */
+    static final class Written {
+        final String className;
+        final String[] names;
+        final String[] typeNames;
+        final int[] encodings;
+        Mapping mapping;
+
+        Written(String className, String[] names, String[] typeNames, int[] encodings) {
+            this.className = className;
+            this.names = names;
+            this.typeNames = typeNames;
+            this.encodings = encodings;
+        }
+    }
+
+    /**
+     * the layout of a class as written by another process, mapped onto the fields of the local class
+     */
+    static final class Mapping {
+        final Class<?> clazz;
+        final ClassDescriptor target;
+        // per written field, the encodings as written
+        final Class<?>[] types;
+        final int[] encodings;
+        final int[] references;
+        // the inline cache of each written field, read
+        final Sedes.DispatchSite[] sites;
+        // the local field index of each written field, -1 if the local class has no such field
+        final int[] targets;
+        // same fields, order and types on both sides, values are set without conversion
+        final boolean identical;
+
+        Mapping(Class<?> clazz, String[] names, Class<?>[] types, int[] encodings) {
+            this.clazz = clazz;
+            this.types = types;
+            this.encodings = encodings;
+            target = ClassDescriptor.of(clazz);
+            targets = new int[names.length];
+            boolean identical = names.length == target.fields.length;
+            for (int i = 0; i < names.length; i++) {
+                // same layout on both sides in the common case, the index also tells shadowed fields apart
+                int index = i < target.names.length && target.names[i].equals(names[i]) ? i : target.indexOf(names[i]);
+                if (index >= 0 && !isCompatible(target.fields[index].getType(), types[i])) {
+                    index = -1; // the declared type changed, the old value is dropped
+                }
+                targets[i] = index;
+                identical &= index == i && target.fields[i].getType() == types[i] && encodings[i] == encodingOf(types[i]);
+            }
+            this.identical = identical;
+            references = referencesOf(encodings);
+            sites = sitesOf(encodings);
+        }
+
+        private static boolean isCompatible(Class<?> local, Class<?> written) {
+            if (local.isPrimitive() || written.isPrimitive()) {
+                return local == written;
+            }
+            return true; // a reference is checked again when it is set, its runtime class may still fit
+        }
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.fairysword.hanoi;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import com.fairysword.hanoi.policy.ClassCopier;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * How a class can copy itself, resolved once per class. reflection over its fields is the fallback
+ */
+final class CopyCapability {
+
+    static final int REFLECT = 0;
+    /**
+     * a {@link ClassCopier} registered by the user
+     */
+    static final int REGISTERED = 1;
+    /**
+     * write to and read from a {@link Parcel} through the CREATOR
+     */
+    static final int PARCEL = 2;
+    /**
+     * call the public clone(), only when every copied field is primitive or shared, so any clone is a
+     * full copy
+     */
+    static final int CLONE = 3;
+
+    static final CopyCapability REFLECTION = new CopyCapability(REFLECT, null, null);
+
+    final int kind;
+    final ClassCopier<Object> copier;
+    final Method clone;
+
+    CopyCapability(int kind, ClassCopier<Object> copier, Method clone) {
+        this.kind = kind;
+        this.copier = copier;
+        this.clone = clone;
+    }
+
+    /**
+     * @return true if the copy is made by the class itself, its fields must not be reset on release
+     */
+    boolean isOpaque() {
+        return kind == REGISTERED || kind == PARCEL;
+    }
+
+    Object copy(Jock jock, Object original) throws CopyException {
+        switch (kind) {
+            case REGISTERED:
+                return copier.copy(jock, original);
+            case PARCEL:
+                return copyParcelable((Parcelable) original);
+            case CLONE:
+                Object copy;
+                try {
+                    copy = clone.invoke(original);
+                } catch (IllegalAccessException | InvocationTargetException e) {
+                    throw new CopyException("can not clone " + original.getClass().getName() + ": " + e);
+                }
+                if (copy == null || copy.getClass() != original.getClass()) {
+                    throw new CopyException("clone() of " + original.getClass().getName() + " returned "
+                            + (copy == null ? "null" : copy.getClass().getName()));
+                }
+                return copy;
+            default:
+                throw new IllegalStateException("copied by reflection");
+        }
+    }
+
+    /**
+     * an inherited clone() may build an instance of the superclass, only one declared by the class itself
+     * is trusted
+     *
+     * @return the public clone() declared by the class, or null
+     */
+    static Method publicClone(Class<?> clazz) {
+        if (!Cloneable.class.isAssignableFrom(clazz)) {
+            return null;
+        }
+        try {
+            Method clone = clazz.getMethod("clone");
+            return clone.getDeclaringClass() == clazz ? clone : null;
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static Object copyParcelable(Parcelable original) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.writeParcelable(original, 0);
+            parcel.setDataPosition(0);
+            return parcel.readParcelable(original.getClass().getClassLoader());
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+}
@@ -0,0 +1,41 @@
+package com.fairysword.hanoi;
+
+import com.fairysword.hanoi.generated.GeneratedCopier;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+/**
+ * State of a single {@link Jock#copy} call
+ */
+final class CopyContext {
+
+    private final Future<?> task;
+    GeneratedCopier.DeepCopier deepCopier;
+    // original -> copy, only when sharing is preserved
+    final Map<Object, Object> copies;
+    // read each object consistently before copying its children, see Jock#snapshot
+    final boolean snapshot;
+
+    CopyContext(Future<?> task) {
+        this(task, false);
+    }
+
+    CopyContext(Future<?> task, boolean preserveSharing) {
+        this(task, preserveSharing, false);
+    }
+
+    CopyContext(Future<?> task, boolean preserveSharing, boolean snapshot) {
+        this.task = task;
+        this.copies = preserveSharing ? new IdentityHashMap<>() : null;
+        this.snapshot = snapshot;
+    }
+
+    void checkCancelled() throws CopyException {
+        if (task != null && task.isCancelled()) {
+            throw new CopyException("copy cancelled");
+        }
+    }
+
+}
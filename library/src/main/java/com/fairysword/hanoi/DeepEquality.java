@@ -0,0 +1,266 @@
+package com.fairysword.hanoi;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Deep equality and structural hashing of a single {@link Jock#deepEquals} or {@link Jock#deepHash} call.
+ * <p>
+ * Fields are compared the way Jock copies them: skipped fields are ignored, shared and custom fields are
+ * compared with equals, deep fields recursively, and primitives without boxing. Lists are compared in
+ * order, maps by key lookup, and sets in iteration order before falling back to {@link Set#equals}.
+ */
+final class DeepEquality {
+
+    private final Jock jock;
+    private final StructuralHashCache cache;
+    // a -> b pairs under comparison, or objects under hashing, to stop at cycles
+    private final IdentityHashMap<Object, Object> visiting = new IdentityHashMap<>();
+    private int nodes = 0;
+    // set when a hash reached an object still being hashed, the hash then depends on where hashing started
+    private boolean hitCycle = false;
+
+    DeepEquality(Jock jock, StructuralHashCache cache) {
+        this.jock = jock;
+        this.cache = cache;
+    }
+
+    boolean equals(Object a, Object b) throws CopyException {
+        if (a == b) {
+            return true;
+        }
+        if (a == null || b == null || a.getClass() != b.getClass()) {
+            return false;
+        }
+
+        Class<?> clazz = a.getClass();
+        if (jock.isShared(a)) {
+            return a.equals(b);
+        }
+        if (cache != null) {
+            Integer hashA = cache.get(a);
+            Integer hashB = cache.get(b);
+            if (hashA != null && hashB != null && !hashA.equals(hashB)) {
+                return false;
+            }
+        }
+        if (visiting.get(a) == b) {
+            return true; // already under comparison further up a cycle
+        }
+        Object outer = visiting.put(a, b);
+        try {
+            return equalsInner(clazz, a, b);
+        } finally {
+            if (outer == null) {
+                visiting.remove(a);
+            } else {
+                visiting.put(a, outer);
+            }
+        }
+    }
+
+    private boolean equalsInner(Class<?> clazz, Object a, Object b) throws CopyException {
+        if (clazz.isArray()) {
+            return arrayEquals(a, b);
+        } else if (a instanceof Map) {
+            return mapEquals((Map<?, ?>) a, (Map<?, ?>) b);
+        } else if (a instanceof Collection) {
+            return collectionEquals((Collection<?>) a, (Collection<?>) b);
+        }
+
+        FieldAction[] actions = jock.fieldActions(clazz);
+        try {
+            for (int i = 0; i < actions.length; i++) {
+                FieldAction action = actions[i];
+                if (action.action <= FieldAction.COPY_PRIMITIVE_MAX) {
+                    if (!action.primitiveEquals(a, b)) {
+                        return false;
+                    }
+                } else if (action.action == FieldAction.DEEP) {
+                    if (!equals(action.field.get(a), action.field.get(b))) {
+                        return false;
+                    }
+                } else {
+                    Object va = action.field.get(a);
+                    Object vb = action.field.get(b);
+                    if (va != vb && (va == null || !va.equals(vb))) {
+                        return false;
+                    }
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new CopyException("can not compare " + clazz.getName() + ": " + e.getMessage());
+        }
+        return true;
+    }
+
+    private boolean arrayEquals(Object a, Object b) throws CopyException {
+        if (a instanceof Object[]) {
+            Object[] arrayA = (Object[]) a;
+            Object[] arrayB = (Object[]) b;
+            if (arrayA.length != arrayB.length) {
+                return false;
+            }
+            for (int i = 0; i < arrayA.length; i++) {
+                if (!equals(arrayA[i], arrayB[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return Array.getLength(a) == Array.getLength(b) && Jock.primitiveArrayEquals(a, b);
+    }
+
+    private boolean mapEquals(Map<?, ?> a, Map<?, ?> b) throws CopyException {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (Map.Entry<?, ?> entry : a.entrySet()) {
+            Object value = b.get(entry.getKey());
+            if (value == null && !b.containsKey(entry.getKey())) {
+                return false;
+            }
+            if (!equals(entry.getValue(), value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean collectionEquals(Collection<?> a, Collection<?> b) throws CopyException {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        Iterator<?> itA = a.iterator();
+        Iterator<?> itB = b.iterator();
+        while (itA.hasNext() && itB.hasNext()) {
+            if (!equals(itA.next(), itB.next())) {
+                // equal sets may iterate in different orders
+                return a instanceof Set && !(a instanceof List) && a.equals(b);
+            }
+        }
+        return !itA.hasNext() && !itB.hasNext();
+    }
+
+    int hash(Object object) throws CopyException {
+        if (object == null) {
+            return 0;
+        }
+
+        Class<?> clazz = object.getClass();
+        if (jock.isShared(object)) {
+            nodes++;
+            return object.hashCode();
+        }
+        if (cache != null) {
+            Integer cached = cache.get(object);
+            if (cached != null) {
+                nodes++;
+                return cached;
+            }
+        }
+        if (visiting.put(object, object) != null) {
+            hitCycle = true;
+            return 0; // a cycle back to an object being hashed
+        }
+
+        int nodesBefore = nodes;
+        boolean outerHitCycle = hitCycle;
+        hitCycle = false;
+        int hash;
+        boolean cyclic;
+        try {
+            hash = hashInner(clazz, object);
+        } finally {
+            visiting.remove(object);
+            cyclic = hitCycle;
+            hitCycle = outerHitCycle || cyclic;
+        }
+        nodes++;
+        if (cache != null && !cyclic) { // only hashes that are the same from any starting point are cached
+            cache.put(object, hash, nodes - nodesBefore);
+        }
+        return hash;
+    }
+
+    private int hashInner(Class<?> clazz, Object object) throws CopyException {
+        if (clazz.isArray()) {
+            if (!(object instanceof Object[])) {
+                return primitiveArrayHash(object);
+            }
+            int hash = 1;
+            for (Object item : (Object[]) object) {
+                hash = 31 * hash + hash(item);
+            }
+            return hash;
+        } else if (object instanceof Map) {
+            int hash = 0;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) object).entrySet()) {
+                hash += hash(entry.getKey()) ^ hash(entry.getValue());
+            }
+            return hash;
+        } else if (object instanceof Set) {
+            int hash = 0;
+            for (Object item : (Set<?>) object) {
+                hash += hash(item);
+            }
+            return hash;
+        } else if (object instanceof Collection) {
+            int hash = 1;
+            for (Object item : (Collection<?>) object) {
+                hash = 31 * hash + hash(item);
+            }
+            return hash;
+        }
+
+        int hash = clazz.hashCode();
+        FieldAction[] actions = jock.fieldActions(clazz);
+        try {
+            for (int i = 0; i < actions.length; i++) {
+                FieldAction action = actions[i];
+                Field field = action.field;
+                int fieldHash;
+                if (action.action <= FieldAction.COPY_PRIMITIVE_MAX) {
+                    fieldHash = action.primitiveHash(object);
+                } else if (action.action == FieldAction.DEEP) {
+                    fieldHash = hash(field.get(object));
+                } else {
+                    Object value = field.get(object);
+                    fieldHash = value == null ? 0 : value.hashCode();
+                }
+                hash = 31 * hash + fieldHash;
+            }
+        } catch (IllegalAccessException e) {
+            throw new CopyException("can not hash " + clazz.getName() + ": " + e.getMessage());
+        }
+        return hash;
+    }
+
+    private static int primitiveArrayHash(Object a) {
+        if (a instanceof int[]) {
+            return Arrays.hashCode((int[]) a);
+        } else if (a instanceof long[]) {
+            return Arrays.hashCode((long[]) a);
+        } else if (a instanceof byte[]) {
+            return Arrays.hashCode((byte[]) a);
+        } else if (a instanceof char[]) {
+            return Arrays.hashCode((char[]) a);
+        } else if (a instanceof double[]) {
+            return Arrays.hashCode((double[]) a);
+        } else if (a instanceof float[]) {
+            return Arrays.hashCode((float[]) a);
+        } else if (a instanceof short[]) {
+            return Arrays.hashCode((short[]) a);
+        } else {
+            return Arrays.hashCode((boolean[]) a);
+        }
+    }
+
+}
@@ -0,0 +1,124 @@
+package com.fairysword.hanoi;
+
+import com.fairysword.hanoi.policy.CopyPolicy;
+import com.fairysword.hanoi.policy.FieldCopier;
+
+import java.lang.reflect.Field;
+
+/**
+ * A field together with its resolved {@link CopyPolicy} and the precomputed action of the copy loop.
+ * skipped fields have no action
+ */
+final class FieldAction {
+
+    /**
+     * copy a primitive by value, the action equals the {@link ClassDescriptor} kind from KIND_BOOLEAN to
+     * KIND_DOUBLE
+     */
+    static final int COPY_PRIMITIVE_MAX = ClassDescriptor.KIND_DOUBLE;
+    /**
+     * share the reference, for shallow and immutable fields
+     */
+    static final int SHARE = 8;
+    static final int DEEP = 9;
+    static final int CUSTOM = 10;
+
+    final Field field;
+    final CopyPolicy policy;
+    final FieldCopier copier;
+    final int action;
+    // the inline cache of the copies of a deep field
+    final Jock.DispatchSite site = new Jock.DispatchSite();
+
+    FieldAction(Field field, int kind, CopyPolicy policy, FieldCopier copier) {
+        this.field = field;
+        this.policy = policy;
+        this.copier = copier;
+        this.action = actionOf(kind, policy);
+    }
+
+    private static int actionOf(int kind, CopyPolicy policy) {
+        if (policy == CopyPolicy.CUSTOM) {
+            return CUSTOM;
+        } else if (kind <= COPY_PRIMITIVE_MAX) {
+            return kind;
+        } else if (policy == CopyPolicy.SHALLOW || kind == ClassDescriptor.KIND_IMMUTABLE) {
+            return SHARE;
+        }
+        return DEEP;
+    }
+
+    void copyPrimitive(Object from, Object to) throws IllegalAccessException {
+        switch (action) {
+            case ClassDescriptor.KIND_BOOLEAN:
+                field.setBoolean(to, field.getBoolean(from));
+                break;
+            case ClassDescriptor.KIND_BYTE:
+                field.setByte(to, field.getByte(from));
+                break;
+            case ClassDescriptor.KIND_CHAR:
+                field.setChar(to, field.getChar(from));
+                break;
+            case ClassDescriptor.KIND_SHORT:
+                field.setShort(to, field.getShort(from));
+                break;
+            case ClassDescriptor.KIND_INT:
+                field.setInt(to, field.getInt(from));
+                break;
+            case ClassDescriptor.KIND_LONG:
+                field.setLong(to, field.getLong(from));
+                break;
+            case ClassDescriptor.KIND_FLOAT:
+                field.setFloat(to, field.getFloat(from));
+                break;
+            default:
+                field.setDouble(to, field.getDouble(from));
+                break;
+        }
+    }
+
+    boolean primitiveEquals(Object a, Object b) throws IllegalAccessException {
+        switch (action) {
+            case ClassDescriptor.KIND_BOOLEAN:
+                return field.getBoolean(a) == field.getBoolean(b);
+            case ClassDescriptor.KIND_BYTE:
+                return field.getByte(a) == field.getByte(b);
+            case ClassDescriptor.KIND_CHAR:
+                return field.getChar(a) == field.getChar(b);
+            case ClassDescriptor.KIND_SHORT:
+                return field.getShort(a) == field.getShort(b);
+            case ClassDescriptor.KIND_INT:
+                return field.getInt(a) == field.getInt(b);
+            case ClassDescriptor.KIND_LONG:
+                return field.getLong(a) == field.getLong(b);
+            case ClassDescriptor.KIND_FLOAT:
+                return Float.floatToIntBits(field.getFloat(a)) == Float.floatToIntBits(field.getFloat(b));
+            default:
+                return Double.doubleToLongBits(field.getDouble(a)) == Double.doubleToLongBits(field.getDouble(b));
+        }
+    }
+
+    int primitiveHash(Object object) throws IllegalAccessException {
+        switch (action) {
+            case ClassDescriptor.KIND_BOOLEAN:
+                return field.getBoolean(object) ? 1231 : 1237;
+            case ClassDescriptor.KIND_BYTE:
+                return field.getByte(object);
+            case ClassDescriptor.KIND_CHAR:
+                return field.getChar(object);
+            case ClassDescriptor.KIND_SHORT:
+                return field.getShort(object);
+            case ClassDescriptor.KIND_INT:
+                return field.getInt(object);
+            case ClassDescriptor.KIND_LONG:
+                long l = field.getLong(object);
+                return (int) (l ^ (l >>> 32));
+            case ClassDescriptor.KIND_FLOAT:
+                return Float.floatToIntBits(field.getFloat(object));
+            default:
+                long d = Double.doubleToLongBits(field.getDouble(object));
+                return (int) (d ^ (d >>> 32));
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+package com.fairysword.hanoi;
+
+import android.os.Process;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors of asynchronous copies and serializations, one lane per {@link Priority} so interactive
+ * tasks never queue behind background ones.
+ * <p>
+ * Each default lane queues at most {@link #setQueueCapacity} tasks, so a flood of submissions can not hold
+ * their source graphs without limit. A task submitted to a full lane, or rejected by a custom executor, is
+ * not run and its future fails with a {@link RejectedExecutionException}.
+ */
+public final class HanoiExecutor {
+
+    private static final int KEEP_ALIVE_SECONDS = 30;
+    private static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+    private static volatile int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+
+    private static volatile Executor interactiveExecutor;
+    private static volatile Executor backgroundExecutor;
+
+    private HanoiExecutor() {
+    }
+
+    /**
+     * replace the executor of a lane, the default lanes have a single thread each
+     *
+     * @param priority the lane
+     * @param executor the executor, should be bounded and throw {@link RejectedExecutionException} when full
+     */
+    public static void setExecutor(Priority priority, Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor is null");
+        }
+        if (priority == Priority.INTERACTIVE) {
+            interactiveExecutor = executor;
+        } else {
+            backgroundExecutor = executor;
+        }
+    }
+
+    /**
+     * set the max number of tasks waiting in each default lane, default is 64. only lanes created after the
+     * call use it, so set it before the first asynchronous task
+     *
+     * @param capacity the max number of waiting tasks
+     */
+    public static void setQueueCapacity(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("queue capacity must be positive: " + capacity);
+        }
+        queueCapacity = capacity;
+    }
+
+    static <V> HanoiFuture<V> submit(Priority priority, HanoiFuture.Task<V> task) {
+        HanoiFuture<V> future = new HanoiFuture<>(task);
+        try {
+            executor(priority).execute(future);
+        } catch (RejectedExecutionException e) {
+            future.reject(e);
+        }
+        return future;
+    }
+
+    private static Executor executor(Priority priority) {
+        if (priority == Priority.INTERACTIVE) {
+            if (interactiveExecutor == null) {
+                synchronized (HanoiExecutor.class) {
+                    if (interactiveExecutor == null) {
+                        interactiveExecutor = newLane("hanoi-interactive", Process.THREAD_PRIORITY_DEFAULT);
+                    }
+                }
+            }
+            return interactiveExecutor;
+        }
+
+        if (backgroundExecutor == null) {
+            synchronized (HanoiExecutor.class) {
+                if (backgroundExecutor == null) {
+                    backgroundExecutor = newLane("hanoi-background", Process.THREAD_PRIORITY_BACKGROUND);
+                }
+            }
+        }
+        return backgroundExecutor;
+    }
+
+    private static Executor newLane(final String name, final int threadPriority) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(final Runnable r) {
+                Thread thread = new Thread(() -> {
+                    Process.setThreadPriority(threadPriority);
+                    r.run();
+                }, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.fairysword.hanoi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * The result of an asynchronous copy or serialization, cancelling it stops the work between objects
+ */
+public class HanoiFuture<V> extends FutureTask<V> {
+
+    private final List<Callback<? super V>> callbacks = new ArrayList<>();
+
+    HanoiFuture(Task<V> task) {
+        this(new TaskCallable<>(task));
+    }
+
+    private HanoiFuture(TaskCallable<V> callable) {
+        super(callable);
+        callable.future = this;
+    }
+
+    /**
+     * add a callback invoked when the future completes, on the worker thread (or the calling thread if
+     * the future is already done)
+     *
+     * @param callback the callback
+     */
+    public void addCallback(Callback<? super V> callback) {
+        synchronized (callbacks) {
+            if (!isDone()) {
+                callbacks.add(callback);
+                return;
+            }
+        }
+        notify(callback);
+    }
+
+    /**
+     * fail the future without running it, its executor refused the task
+     */
+    void reject(Throwable error) {
+        setException(error);
+    }
+
+    @Override
+    protected void done() {
+        List<Callback<? super V>> pending;
+        synchronized (callbacks) {
+            pending = new ArrayList<>(callbacks);
+            callbacks.clear();
+        }
+        for (Callback<? super V> callback : pending) {
+            notify(callback);
+        }
+    }
+
+    private void notify(Callback<? super V> callback) {
+        V result;
+        try {
+            result = get();
+        } catch (ExecutionException e) {
+            callback.onFailure(e.getCause());
+            return;
+        } catch (CancellationException | InterruptedException e) {
+            callback.onFailure(e);
+            return;
+        }
+        callback.onSuccess(result);
+    }
+
+    /**
+     * completion callback of a {@link HanoiFuture}
+     */
+    public interface Callback<V> {
+        void onSuccess(V result);
+
+        void onFailure(Throwable error);
+    }
+
+    interface Task<V> {
+        V run(Future<?> self) throws Exception;
+    }
+
+    private static class TaskCallable<V> implements Callable<V> {
+        private final Task<V> task;
+        private Future<?> future;
+
+        TaskCallable(Task<V> task) {
+            this.task = task;
+        }
+
+        @Override
+        public V call() throws Exception {
+            return task.run(future);
+        }
+    }
+
+}
@@ -0,0 +1,160 @@
+package com.fairysword.hanoi;
+
+import android.os.Parcel;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Reads single elements of a list or array, or single values of a map, serialized as the root of a
+ * {@link Sedes} payload with {@link Sedes#setIndexedContainers} enabled, without decoding the rest of the
+ * container. not thread safe
+ */
+public final class IndexedReader {
+
+    private final SedesContext context = new SedesContext(null);
+    private final boolean isMap;
+    private final int size;
+    private final int tableStart;
+    private Parcel parcel;
+
+    /**
+     * @param bytes a payload of {@link Sedes#serialize} whose root is an indexed container
+     * @throws IllegalArgumentException if the root is not an indexed container
+     */
+    public IndexedReader(byte[] bytes) {
+        bytes = Sedes.decompressIfNeeded(bytes);
+        if (bytes == null) {
+            throw new IllegalArgumentException("no payload");
+        }
+
+        parcel = Parcel.obtain();
+        parcel.unmarshall(bytes, 0, bytes.length);
+        parcel.setDataPosition(0);
+        try {
+            Sedes.readPayloadHeader(parcel, context);
+            Class<?> clazz = Sedes.findClassFromName(Sedes.readType(parcel, context));
+            isMap = Map.class.isAssignableFrom(clazz);
+            if (parcel.readInt() != Sedes.VALUE_PRESENT || (!isMap && !clazz.isArray() && !Collection.class.isAssignableFrom(clazz))
+                    || parcel.readInt() != Sedes.INDEXED) {
+                throw new IllegalArgumentException("root is not an indexed container");
+            }
+            size = parcel.readInt();
+            int end = parcel.readInt();
+            tableStart = end - size * (isMap ? Sedes.KEY_INDEX_ENTRY_SIZE : Sedes.INDEX_ENTRY_SIZE);
+        } catch (ClassNotFoundException | RuntimeException e) {
+            recycle();
+            throw new IllegalArgumentException("root is not an indexed container", e);
+        }
+    }
+
+    /**
+     * @return the number of elements, or entries of a map
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if the root is a map, read it with {@link #get(Object)}
+     */
+    public boolean isMap() {
+        return isMap;
+    }
+
+    /**
+     * @param index the index of the element, in iteration order for collections
+     * @return the element
+     * @throws ClassNotFoundException
+     */
+    public Object get(int index) throws ClassNotFoundException {
+        checkNotRecycled();
+        if (isMap) {
+            throw new IllegalStateException("root is a map, get values by key");
+        }
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + " of " + size);
+        }
+        parcel.setDataPosition(tableStart + index * Sedes.INDEX_ENTRY_SIZE);
+        parcel.setDataPosition(parcel.readInt());
+        return Sedes.readTypeValuePair(parcel, context);
+    }
+
+    /**
+     * @param key the key, its hash code must be the same in every process (strings, boxed primitives, enums)
+     * @return the value of the key, null if absent
+     * @throws ClassNotFoundException
+     */
+    public Object get(Object key) throws ClassNotFoundException {
+        int offset = find(key);
+        if (offset < 0) {
+            return null;
+        }
+        return Sedes.readTypeValuePair(parcel, context);
+    }
+
+    /**
+     * @param key the key
+     * @return true if the map contains the key
+     * @throws ClassNotFoundException
+     */
+    public boolean containsKey(Object key) throws ClassNotFoundException {
+        return find(key) >= 0;
+    }
+
+    /**
+     * release the buffer, the reader can not be used any more
+     */
+    public void recycle() {
+        if (parcel != null) {
+            parcel.recycle();
+            parcel = null;
+        }
+    }
+
+    /**
+     * @return the offset of the entry of the key, with the parcel positioned at its value, or -1
+     */
+    private int find(Object key) throws ClassNotFoundException {
+        checkNotRecycled();
+        if (!isMap) {
+            throw new IllegalStateException("root is not a map, get elements by index");
+        }
+
+        int hash = Sedes.keyHash(key);
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) { // the first entry of the hash
+            int mid = (low + high) >>> 1;
+            if (hashAt(mid) < hash) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        for (int i = low; i < size && hashAt(i) == hash; i++) {
+            int offset = parcel.readInt();
+            parcel.setDataPosition(offset);
+            Object candidate = Sedes.readTypeValuePair(parcel, context);
+            if (key == null ? candidate == null : key.equals(candidate)) {
+                return offset;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the hash of the index entry, with the parcel positioned at its offset
+     */
+    private int hashAt(int i) {
+        parcel.setDataPosition(tableStart + i * Sedes.KEY_INDEX_ENTRY_SIZE);
+        return parcel.readInt();
+    }
+
+    private void checkNotRecycled() {
+        if (parcel == null) {
+            throw new IllegalStateException("reader already recycled");
+        }
+    }
+
+}
@@ -1,22 +1,39 @@
 package com.fairysword.hanoi;
 
+import android.os.Parcelable;
+
+import com.fairysword.hanoi.generated.Generated;
+import com.fairysword.hanoi.generated.GeneratedCopier;
 import com.fairysword.hanoi.instance.InstancePool;
+import com.fairysword.hanoi.policy.ClassCopier;
+import com.fairysword.hanoi.policy.CopyPolicy;
+import com.fairysword.hanoi.policy.FieldCopier;
+import com.fairysword.hanoi.policy.Policy;
+import com.fairysword.hanoi.policy.SnapshotLock;
+import com.fairysword.hanoi.policy.VersionStamped;
+import com.fairysword.hanoi.utils.ClassCache;
 
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
-import java.math.BigDecimal;
-import java.math.BigInteger;
-import java.net.URI;
-import java.net.URL;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.regex.Pattern;
+import java.util.concurrent.locks.Lock;
 
 /**
  * The java object copy kit (now only support android)
@@ -26,10 +43,32 @@ public class Jock {
 
     private static Jock sInstance = null;
 
-    private static final ConcurrentHashMap<Class<?>, Map<String, Field>> nonStaticFieldsCache = new ConcurrentHashMap<>();
     private final Set<Class<?>> ignoredClasses = new HashSet<>();
     private final Set<Class<?>> immutableClasses = new HashSet<>();
 
+    private static final Object NO_GENERATED_COPIER = new Object();
+    private static final Field ACCESS_ORDER = accessOrderField();
+
+    private final ClassCache<FieldAction[]> fieldActionsCache = new ClassCache<>("jock field actions");
+    private final ClassCache<PrimitiveBlock> primitiveBlocksCache = new ClassCache<>("jock primitive blocks");
+    private final ClassCache<Object> generatedCopiersCache = new ClassCache<>("jock generated copiers");
+    private final ClassCache<CopyCapability> capabilitiesCache = new ClassCache<>("jock copy capabilities");
+    private final ClassCache<Dispatch> dispatchCache = new ClassCache<>("jock dispatch");
+
+    // how an instance of a class is copied, resolved once per class by dispatchOf
+    private static final int DISPATCH_SHARED = 0;
+    private static final int DISPATCH_ARRAY = 1;
+    private static final int DISPATCH_OBJECT = 2;
+    private static final int DISPATCH_SELF = 3;
+    private final Map<Class<?>, ClassCopier<Object>> classCopiers = new ConcurrentHashMap<>();
+    private final Map<Class<?>, SnapshotLock<Object>> snapshotLocks = new ConcurrentHashMap<>();
+    private volatile int snapshotRetries = 8;
+    private final Map<Field, CopyPolicy> fieldPolicies = new ConcurrentHashMap<>();
+    private final Map<Field, FieldCopier> fieldCopiers = new ConcurrentHashMap<>();
+    private volatile CopyPolicy transientPolicy = CopyPolicy.SKIP;
+    // names only, a class would pin its class loader
+    private final Set<String> warmedClasses = new HashSet<>();
+
     /**
      * @return get Jock instance
      */
@@ -47,7 +86,245 @@ public class Jock {
      * @throws CopyException
      */
     public Object copy(Object original) throws CopyException {
-        return copyInternal(original);
+        return copyInternal(original, new CopyContext(null));
+    }
+
+    /**
+     * copy a graph that other threads may be mutating. the own fields or elements of each object are read
+     * under its {@link SnapshotLock}, and read again while its {@link VersionStamped} version changed or its
+     * iteration failed with a {@link ConcurrentModificationException}. children are copied after the read,
+     * so writers are never blocked for more than the read of a single object. concurrent collections are
+     * read through their weakly consistent iterators
+     *
+     * @param original the source object
+     * @return a copy in which each object is consistent with itself
+     * @throws CopyException if an object kept changing during all retries
+     */
+    public Object snapshot(Object original) throws CopyException {
+        return copyInternal(original, new CopyContext(null, false, true));
+    }
+
+    /**
+     * copy many roots at once, class metadata is resolved once per distinct root class of the batch
+     *
+     * @param originals the source objects
+     * @return the copies, in the order of the source objects
+     * @throws CopyException
+     */
+    public <T> List<T> copyAll(List<T> originals) throws CopyException {
+        return copyAll(originals, false);
+    }
+
+    /**
+     * @param originals       the source objects
+     * @param preserveSharing copy an object reachable from several roots (or several times from one root)
+     *                        only once, so the copies share it like the source objects do. generated
+     *                        copiers are bypassed then, they can not end a cycle
+     * @return the copies, in the order of the source objects
+     * @throws CopyException
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> copyAll(List<T> originals, boolean preserveSharing) throws CopyException {
+        CopyContext context = new CopyContext(null, preserveSharing);
+        BatchRoots roots = new BatchRoots();
+        List<T> copies = new ArrayList<>(originals.size());
+        for (int i = 0, size = originals.size(); i < size; i++) {
+            copies.add((T) copyRoot(originals.get(i), roots, context));
+        }
+        return copies;
+    }
+
+    /**
+     * @param originals the source objects
+     * @return the copies, an array of the same component type as the source array
+     * @throws CopyException
+     */
+    public <T> T[] copyAll(T[] originals) throws CopyException {
+        return copyAll(originals, false);
+    }
+
+    /**
+     * @param originals       the source objects
+     * @param preserveSharing see {@link #copyAll(List, boolean)}
+     * @return the copies, an array of the same component type as the source array
+     * @throws CopyException
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T[] copyAll(T[] originals, boolean preserveSharing) throws CopyException {
+        CopyContext context = new CopyContext(null, preserveSharing);
+        BatchRoots roots = new BatchRoots();
+        T[] copies = (T[]) Array.newInstance(originals.getClass().getComponentType(), originals.length);
+        for (int i = 0; i < originals.length; i++) {
+            copies[i] = (T) copyRoot(originals[i], roots, context);
+        }
+        return copies;
+    }
+
+    /**
+     * copy on the executor lane of the priority, cancelling the future stops the copy between objects
+     *
+     * @param original the source object
+     * @param priority the executor lane to run on
+     * @return the future of the copy
+     */
+    public HanoiFuture<Object> copyAsync(final Object original, Priority priority) {
+        return HanoiExecutor.submit(priority, task -> copyInternal(original, new CopyContext(task)));
+    }
+
+    /**
+     * copy the source object sharing every unchanged subgraph with the previous version, so a history of
+     * versions costs memory in proportion to the edits between them. a subgraph is unchanged when all its
+     * primitives are equal and all its references are identical to the previous version, values of
+     * {@link CopyPolicy#CUSTOM} fields are compared with equals. classes copied by a {@link ClassCopier}, a
+     * generated copier or their own CREATOR or clone() are copied the same way as by {@link #copy}, and are
+     * never identical to the previous version
+     *
+     * @param original        the source object
+     * @param previousVersion a copy of an earlier state of the source, null to make a full copy. versions
+     *                        must never be mutated or passed to {@link #release}, they share objects
+     * @return the copy of the source object
+     * @throws CopyException
+     */
+    public Object copyVersion(Object original, Object previousVersion) throws CopyException {
+        return copyShared(original, previousVersion, new CopyContext(null));
+    }
+
+    /**
+     * compare two graphs field by field the way they are copied, skipped fields are ignored and custom or
+     * shallow fields are compared with equals. cycles are supported
+     *
+     * @param a a graph
+     * @param b another graph
+     * @return true if the graphs are structurally equal
+     * @throws CopyException
+     */
+    public boolean deepEquals(Object a, Object b) throws CopyException {
+        return new DeepEquality(this, null).equals(a, b);
+    }
+
+    /**
+     * {@link #deepEquals(Object, Object)} that answers false early for subtrees whose cached hashes differ
+     *
+     * @param a     a graph
+     * @param b     another graph
+     * @param cache hashes filled by {@link #deepHash(Object, StructuralHashCache)}
+     * @return true if the graphs are structurally equal
+     * @throws CopyException
+     */
+    public boolean deepEquals(Object a, Object b, StructuralHashCache cache) throws CopyException {
+        return new DeepEquality(this, cache).equals(a, b);
+    }
+
+    /**
+     * estimate the heap retained by a graph, objects reachable several times are counted once. enums,
+     * singletons and ignored classes are not counted, strings and boxed values are
+     *
+     * @param object a graph
+     * @return the estimated bytes
+     */
+    public long deepSizeOf(Object object) {
+        return deepSizeOf(object, SizeEstimator.DEFAULT_SAMPLE_SIZE);
+    }
+
+    /**
+     * @param object     a graph
+     * @param sampleSize containers with more elements are measured on this many elements and extrapolated
+     * @return the estimated bytes
+     */
+    public long deepSizeOf(Object object, int sampleSize) {
+        return SizeEstimator.heapSizeOf(this, object, sampleSize);
+    }
+
+    /**
+     * @param object a graph
+     * @return a hash consistent with {@link #deepEquals}
+     * @throws CopyException
+     */
+    public int deepHash(Object object) throws CopyException {
+        return new DeepEquality(this, null).hash(object);
+    }
+
+    /**
+     * {@link #deepHash(Object)} reusing and filling the hashes of large subtrees, so rehashing a version
+     * made by {@link #copyVersion} only walks the changed part
+     *
+     * @param object a graph
+     * @param cache  the hashes of unchanged subtrees
+     * @return a hash consistent with {@link #deepEquals}
+     * @throws CopyException
+     */
+    public int deepHash(Object object, StructuralHashCache cache) throws CopyException {
+        return new DeepEquality(this, cache).hash(object);
+    }
+
+    /**
+     * resolve all metadata used to copy and serialize the classes and the classes reachable from their
+     * fields, so the first copy does not pay for reflection
+     *
+     * @param classes the root classes
+     * @throws CopyException
+     */
+    public void prewarm(Class<?>... classes) throws CopyException {
+        Set<Class<?>> visited = new HashSet<>();
+        for (Class<?> clazz : classes) {
+            prewarmInternal(clazz, visited);
+        }
+        synchronized (warmedClasses) {
+            for (Class<?> clazz : visited) {
+                warmedClasses.add(clazz.getName());
+            }
+        }
+    }
+
+    /**
+     * {@link #prewarm} on the background lane of {@link HanoiExecutor}
+     *
+     * @param classes the root classes
+     * @return the future of the warm-up
+     */
+    public HanoiFuture<Void> prewarmAsync(final Class<?>... classes) {
+        return HanoiExecutor.submit(Priority.BACKGROUND, task -> {
+            prewarm(classes);
+            return null;
+        });
+    }
+
+    /**
+     * @return the sorted names of all classes warmed by {@link #prewarm}, to check at build time that the
+     * warm-up covers the shipped classes
+     */
+    public List<String> exportWarmedClasses() {
+        List<String> names;
+        synchronized (warmedClasses) {
+            names = new ArrayList<>(warmedClasses);
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * return the objects of a copied graph to the recycle pools of {@link InstancePool}, later copies on the
+     * same thread reuse them instead of allocating. only deep copied parts are released, shared and
+     * immutable values are left untouched. objects with skipped fields are not recycled, a copy would not
+     * restore the values their constructor set. collections and maps are only cleared and recycled when
+     * {@link InstancePool#isSized} knows their class, the others are left as they are
+     *
+     * @param copy a graph returned by {@link #copy}, must not be used after released
+     * @throws CopyException
+     */
+    public void release(Object copy) throws CopyException {
+        releaseInternal(copy, new IdentityHashMap<>());
+    }
+
+    /**
+     * register the canonical instance of its class, copies share it and Sedes writes it by class only, so
+     * it stays unique. enum constants are always handled this way
+     *
+     * @param singleton the instance, at most one per class
+     * @throws IllegalArgumentException if another instance of the class is registered
+     */
+    public void registerSingleton(Object singleton) {
+        Singletons.register(singleton);
     }
 
     /**
@@ -57,148 +334,977 @@ public class Jock {
      */
     public void registerIgnoredClass(Class<?> clazz) {
         ignoredClasses.add(clazz);
+        invalidateFieldActions();
+    }
+
+    /**
+     * register the copy policy of a field, overrides the {@link Policy} annotation
+     *
+     * @param clazz     the class declaring the field
+     * @param fieldName the field name
+     * @param policy    the copy policy, use {@link #registerFieldCopier} for {@link CopyPolicy#CUSTOM}
+     */
+    public void registerFieldPolicy(Class<?> clazz, String fieldName, CopyPolicy policy) {
+        if (policy == CopyPolicy.CUSTOM) {
+            throw new IllegalArgumentException("use registerFieldCopier for custom policy");
+        }
+        Field field = declaredField(clazz, fieldName);
+        fieldCopiers.remove(field);
+        fieldPolicies.put(field, policy);
+        invalidateFieldActions();
+    }
+
+    /**
+     * register a custom copier of a field
+     *
+     * @param clazz     the class declaring the field
+     * @param fieldName the field name
+     * @param copier    the copier of the field value
+     */
+    public void registerFieldCopier(Class<?> clazz, String fieldName, FieldCopier copier) {
+        Field field = declaredField(clazz, fieldName);
+        fieldCopiers.put(field, copier);
+        fieldPolicies.put(field, CopyPolicy.CUSTOM);
+        invalidateFieldActions();
+    }
+
+    /**
+     * register a custom copier of every instance of the class, it takes precedence over all other ways to
+     * copy the class
+     *
+     * @param clazz  the class, subclasses are not affected
+     * @param copier the copier
+     */
+    @SuppressWarnings("unchecked")
+    public <T> void registerCopier(Class<T> clazz, ClassCopier<? super T> copier) {
+        classCopiers.put(clazz, (ClassCopier<Object>) copier);
+        invalidateFieldActions();
+    }
+
+    /**
+     * register the read lock used by {@link #snapshot} for every instance of the class
+     *
+     * @param clazz the class, subclasses are not affected
+     * @param lock  the lock hook
+     */
+    @SuppressWarnings("unchecked")
+    public <T> void registerSnapshotLock(Class<T> clazz, SnapshotLock<? super T> lock) {
+        snapshotLocks.put(clazz, (SnapshotLock<Object>) lock);
+    }
+
+    /**
+     * set how many times {@link #snapshot} reads an object again before giving up, default is 8
+     *
+     * @param retries the retries, 0 reads each object once
+     */
+    public void setSnapshotRetries(int retries) {
+        if (retries < 0) {
+            throw new IllegalArgumentException("negative retries: " + retries);
+        }
+        snapshotRetries = retries;
+    }
+
+    /**
+     * set the copy policy of transient fields without {@link Policy} annotation, default is {@link CopyPolicy#SKIP}.
+     * transient fields of jdk and android classes are always deep copied
+     *
+     * @param policy the copy policy, must not be {@link CopyPolicy#CUSTOM}
+     */
+    public void setTransientPolicy(CopyPolicy policy) {
+        if (policy == null || policy == CopyPolicy.CUSTOM) {
+            throw new IllegalArgumentException("invalid transient policy: " + policy);
+        }
+        transientPolicy = policy;
+        invalidateFieldActions();
+    }
+
+    private void invalidateFieldActions() {
+        fieldActionsCache.clear();
+        primitiveBlocksCache.clear();
+        generatedCopiersCache.clear();
+        capabilitiesCache.clear();
+        dispatchCache.clear(); // the inline caches of the field actions go with them
     }
 
     private void init() {
         registerJdkImmutableClasses();
         registerIgnoredClasses();
+        // a registry added after the first copy must replace the cached misses
+        Generated.addRegisterListener(this::invalidateFieldActions);
     }
 
-    private boolean isImmutable(Class<?> clazz) {
+    boolean isImmutable(Class<?> clazz) {
         return immutableClasses.contains(clazz);
     }
 
-    private boolean shouldNotCopy(Class<?> clazz) {
+    boolean shouldNotCopy(Class<?> clazz) {
         return ignoredClasses.contains(clazz);
     }
 
-    private Object copyInternal(Object original) throws CopyException {
+    /**
+     * @return true if the object is shared by reference instead of copied
+     */
+    boolean isShared(Object object) {
+        return dispatchOf(object.getClass()).kind == DISPATCH_SHARED || Singletons.isSingleton(object);
+    }
+
+    private Object copyInternal(Object original, CopyContext context) throws CopyException {
+        return copyInternal(original, context, null);
+    }
+
+    /**
+     * @param site the inline cache of the calling field or container, null if it has none
+     */
+    private Object copyInternal(Object original, CopyContext context, DispatchSite site) throws CopyException {
+        if (original == null) {
+            return null;
+        }
+        context.checkCancelled();
+
+        Dispatch dispatch = dispatchOf(original.getClass(), site);
+        if (dispatch.kind == DISPATCH_SELF) {
+            throw new CopyException("can not copy Jock self");
+        }
+
+        if (dispatch.kind == DISPATCH_SHARED || Singletons.isSingleton(original)) {
+            return original;
+        }
+
+        if (context.copies != null) {
+            Object copy = context.copies.get(original);
+            if (copy != null) {
+                return copy;
+            }
+        }
+
+        if (dispatch.kind == DISPATCH_ARRAY) {
+            return copyArray(original, context);
+        }
+
+        return copyObject(original, context);
+    }
+
+    private Dispatch dispatchOf(Class<?> clazz) {
+        Dispatch dispatch = dispatchCache.get(clazz);
+        if (dispatch == null) {
+            int kind;
+            if (Jock.class.equals(clazz)) {
+                kind = DISPATCH_SELF;
+            } else if (isImmutable(clazz) || shouldNotCopy(clazz) || Enum.class.isAssignableFrom(clazz)) {
+                kind = DISPATCH_SHARED;
+            } else if (clazz.isArray()) {
+                kind = DISPATCH_ARRAY;
+            } else {
+                kind = DISPATCH_OBJECT;
+            }
+            dispatch = dispatchCache.putIfAbsent(clazz, new Dispatch(clazz, kind));
+        }
+        return dispatch;
+    }
+
+    private Dispatch dispatchOf(Class<?> clazz, DispatchSite site) {
+        if (site == null) {
+            return dispatchOf(clazz);
+        }
+        Dispatch dispatch = site.last;
+        if (dispatch == null || dispatch.clazz != clazz) {
+            dispatch = dispatchOf(clazz);
+            site.last = dispatch;
+        }
+        return dispatch;
+    }
+
+    /**
+     * copy a root of a batch, the checks and metadata of the last root class are reused for the next root
+     * of the same class
+     */
+    private Object copyRoot(Object original, BatchRoots roots, CopyContext context) throws CopyException {
         if (original == null) {
             return null;
         }
+        Class<?> clazz = original.getClass();
+        if (clazz != roots.clazz) {
+            roots.clazz = clazz;
+            roots.plain = !clazz.isArray() && !Jock.class.equals(clazz) && !isImmutable(clazz) && !shouldNotCopy(clazz)
+                    && !InstancePool.isSized(clazz) && !Enum.class.isAssignableFrom(clazz) && !Singletons.hasSingleton(clazz)
+                    && (context.copies != null || generatedCopier(clazz) == null) && copyCapability(clazz).kind == CopyCapability.REFLECT;
+            roots.actions = roots.plain ? fieldActions(clazz) : null;
+            roots.block = roots.plain ? primitiveBlock(clazz) : null;
+        }
+        if (!roots.plain) {
+            return copyInternal(original, context);
+        }
+
+        context.checkCancelled();
+        if (context.copies != null) {
+            Object copy = context.copies.get(original);
+            if (copy != null) {
+                return copy;
+            }
+        }
+        Object copy = InstancePool.obtain(clazz);
+        if (copy == null) {
+            return null;
+        }
+        if (context.copies != null) {
+            context.copies.put(original, copy);
+        }
+        copyFields(roots.actions, roots.block, original, copy, context);
+        return copy;
+    }
+
+    private Object copyShared(Object original, Object previous, CopyContext context) throws CopyException {
+        if (previous == null || original == null || previous.getClass() != original.getClass()) {
+            return copyInternal(original, context);
+        }
+        context.checkCancelled();
 
         Class<?> clazz = original.getClass();
         if (Jock.class.equals(clazz)) {
             throw new CopyException("can not copy Jock self");
         }
 
-        if (isImmutable(clazz) || shouldNotCopy(clazz)) {
+        if (isShared(original)) {
             return original;
         }
 
         if (clazz.isArray()) {
-            return copyArray(original);
+            return copyArrayShared(original, previous, context);
+        }
+        if (InstancePool.isSized(clazz)) {
+            if (original instanceof Map) {
+                return copyMapShared((Map<?, ?>) original, (Map<?, ?>) previous, context);
+            }
+            return copyCollectionShared((Collection<?>) original, (Collection<?>) previous, context);
+        }
+        if (isOpaque(clazz)) {
+            return copyObject(original, context); // its fields can not be compared, a new copy differs from the last
+        }
+
+        return copyObjectShared(original, previous, context);
+    }
+
+    /**
+     * @return true if instances are copied by a registered copier, a generated copier or a copy capability
+     * instead of field by field
+     */
+    private boolean isOpaque(Class<?> clazz) throws CopyException {
+        return copyCapability(clazz).kind != CopyCapability.REFLECT || generatedCopier(clazz) != null;
+    }
+
+    private Object copyObjectShared(Object original, Object previous, CopyContext context) throws CopyException {
+        FieldAction[] actions = fieldActions(original.getClass());
+        Object[] values = new Object[actions.length];
+        boolean changed = false;
+        try {
+            for (int i = 0; i < actions.length; i++) {
+                FieldAction action = actions[i];
+                Field field = action.field;
+                switch (action.action) {
+                    case FieldAction.SHARE:
+                        values[i] = field.get(original);
+                        changed |= values[i] != field.get(previous);
+                        break;
+                    case FieldAction.DEEP:
+                        Object previousChild = field.get(previous);
+                        values[i] = copyShared(field.get(original), previousChild, context);
+                        changed |= values[i] != previousChild;
+                        break;
+                    case FieldAction.CUSTOM:
+                        values[i] = action.copier.copy(this, field.get(original));
+                        Object previousValue = field.get(previous);
+                        changed |= values[i] == null ? previousValue != null : !values[i].equals(previousValue);
+                        break;
+                    default:
+                        changed |= !action.primitiveEquals(original, previous);
+                        break;
+                }
+            }
+
+            if (!changed) {
+                return previous;
+            }
+
+            Object copy = InstancePool.obtain(original.getClass());
+            if (copy == null) {
+                return null;
+            }
+            for (int i = 0; i < actions.length; i++) {
+                if (actions[i].action <= FieldAction.COPY_PRIMITIVE_MAX) {
+                    actions[i].copyPrimitive(original, copy);
+                } else {
+                    actions[i].field.set(copy, values[i]);
+                }
+            }
+            return copy;
+        } catch (IllegalAccessException e) {
+            e.printStackTrace();
+            return copyObject(original, context);
+        }
+    }
+
+    private Object copyArrayShared(Object original, Object previous, CopyContext context) throws CopyException {
+        final int length = Array.getLength(original);
+        final int previousLength = Array.getLength(previous);
+
+        if (original.getClass().getComponentType().isPrimitive()) {
+            if (length == previousLength && primitiveArrayEquals(original, previous)) {
+                return previous;
+            }
+            return copyArray(original, context);
+        }
+
+        Object[] from = (Object[]) original;
+        Object[] last = (Object[]) previous;
+        Object[] values = null; // allocated on the first changed element
+        for (int i = 0; i < length; i++) {
+            Object value = copyShared(from[i], i < previousLength ? last[i] : null, context);
+            if (values == null && (i >= previousLength || value != last[i])) {
+                values = (Object[]) Array.newInstance(original.getClass().getComponentType(), length);
+                System.arraycopy(last, 0, values, 0, i);
+            }
+            if (values != null) {
+                values[i] = value;
+            }
+        }
+        if (values == null && length != previousLength) { // a shorter array with an unchanged prefix
+            values = (Object[]) Array.newInstance(original.getClass().getComponentType(), length);
+            System.arraycopy(last, 0, values, 0, length);
         }
+        return values != null ? values : previous;
+    }
 
-        return copyObject(original);
+    static boolean primitiveArrayEquals(Object a, Object b) {
+        if (a instanceof int[]) {
+            return Arrays.equals((int[]) a, (int[]) b);
+        } else if (a instanceof long[]) {
+            return Arrays.equals((long[]) a, (long[]) b);
+        } else if (a instanceof byte[]) {
+            return Arrays.equals((byte[]) a, (byte[]) b);
+        } else if (a instanceof char[]) {
+            return Arrays.equals((char[]) a, (char[]) b);
+        } else if (a instanceof double[]) {
+            return Arrays.equals((double[]) a, (double[]) b);
+        } else if (a instanceof float[]) {
+            return Arrays.equals((float[]) a, (float[]) b);
+        } else if (a instanceof short[]) {
+            return Arrays.equals((short[]) a, (short[]) b);
+        } else {
+            return Arrays.equals((boolean[]) a, (boolean[]) b);
+        }
     }
 
-    private Object copyObject(Object original) throws CopyException {
+    private Object copyObject(Object original, CopyContext context) throws CopyException {
         Class<?> clazz = original.getClass();
-        Object copy = InstancePool.newInstance(clazz);
+        CopyCapability capability = copyCapability(clazz);
+        if (capability.kind == CopyCapability.REGISTERED) {
+            return copyWithCapability(capability, original, context);
+        }
+        if (context.snapshot) {
+            return snapshotObject(original, context);
+        }
+        if (InstancePool.isSized(clazz)) {
+            if (original instanceof Map) {
+                return copyMap((Map<?, ?>) original, context);
+            }
+            return copyCollection((Collection<?>) original, ((Collection<?>) original).toArray(), context);
+        }
+
+        // a generated copier could only record its copy after the fields, too late to end a cycle at it
+        GeneratedCopier<Object> generated = context.copies == null ? generatedCopier(clazz) : null;
+        if (generated != null) {
+            if (context.deepCopier == null) {
+                context.deepCopier = value -> copyInternal(value, context);
+            }
+            return generated.copy(this, original, context.deepCopier);
+        }
+        if (capability.kind != CopyCapability.REFLECT) {
+            return copyWithCapability(capability, original, context);
+        }
+
+        Object copy = InstancePool.obtain(clazz);
         if (copy == null) {
             return null;
         }
+        if (context.copies != null) {
+            context.copies.put(original, copy); // before the fields, so cycles end at the copy
+        }
 
-        copyFields(allNonStaticFields(clazz).values(), original, copy);
+        copyFields(fieldActions(clazz), primitiveBlock(clazz), original, copy, context);
         return copy;
     }
 
-    private Object copyArray(Object original) throws CopyException {
+    /**
+     * snapshot copy of a single object. generated copiers and native capabilities read the whole subtree at
+     * once, so they are bypassed for the field by field read
+     */
+    @SuppressWarnings("unchecked")
+    private Object snapshotObject(final Object original, CopyContext context) throws CopyException {
         Class<?> clazz = original.getClass();
+        if (InstancePool.isSized(clazz)) {
+            if (original instanceof Map) {
+                return copyMap((Map<?, ?>) original, readConsistently(original, () -> entriesOf((Map<?, ?>) original)), context);
+            }
+            return copyCollection((Collection<?>) original, readConsistently(original, ((Collection<?>) original)::toArray), context);
+        }
 
-        final int length = Array.getLength(original);
-        final Object newInstance = Array.newInstance(clazz.getComponentType(), length);
+        final Object copy = InstancePool.obtain(clazz);
+        if (copy == null) {
+            return null;
+        }
+        if (context.copies != null) {
+            context.copies.put(original, copy);
+        }
+        final FieldAction[] actions = fieldActions(clazz);
+        final Object[] references = new Object[actions.length];
+        readConsistently(original, () -> {
+            for (int i = 0; i < actions.length; i++) {
+                FieldAction action = actions[i];
+                if (action.action <= FieldAction.COPY_PRIMITIVE_MAX) {
+                    action.copyPrimitive(original, copy);
+                } else if (action.action == FieldAction.SHARE) {
+                    action.field.set(copy, action.field.get(original));
+                } else {
+                    references[i] = action.field.get(original);
+                }
+            }
+            return references;
+        });
+        try {
+            for (int i = 0; i < actions.length; i++) {
+                FieldAction action = actions[i];
+                if (action.action == FieldAction.DEEP) {
+                    action.field.set(copy, copyInternal(references[i], context, action.site));
+                } else if (action.action == FieldAction.CUSTOM) {
+                    action.field.set(copy, action.copier.copy(this, references[i]));
+                }
+            }
+        } catch (IllegalAccessException e) {
+            e.printStackTrace();
+        }
+        return copy;
+    }
 
-        if (clazz.getComponentType().isPrimitive()) { // TODO custom immutable ?
-            //noinspection SuspiciousSystemArraycopy
-            System.arraycopy(original, 0, newInstance, 0, length);
-        } else {
-            for (int i = 0; i < length; i++) {
-                final Object v = Array.get(original, i);
-                final Object clone = copyInternal(v);
-                Array.set(newInstance, i, clone);
+    /**
+     * read the own state of the object under its snapshot lock, again while its version changed or the read
+     * failed with a concurrent modification
+     */
+    private <R> R readConsistently(Object original, SnapshotRead<R> read) throws CopyException {
+        SnapshotLock<Object> hook = snapshotLocks.get(original.getClass());
+        VersionStamped stamped = original instanceof VersionStamped ? (VersionStamped) original : null;
+        int retries = snapshotRetries;
+        for (int attempt = 0; attempt <= retries; attempt++) {
+            if (attempt > 0) {
+                Thread.yield(); // let the writer finish
+            }
+            long version = stamped != null ? stamped.version() : 0;
+            if ((version & 1) != 0) {
+                continue; // a change in progress
+            }
+            Lock lock = hook != null ? hook.readLock(original) : null;
+            if (lock != null) {
+                lock.lock();
+            }
+            try {
+                R result = read.read();
+                if (stamped == null || stamped.version() == version) {
+                    return result;
+                }
+            } catch (ConcurrentModificationException e) {
+                // read again
+            } catch (IllegalAccessException e) {
+                throw new CopyException("can not read " + original.getClass().getName() + ": " + e.getMessage());
+            } finally {
+                if (lock != null) {
+                    lock.unlock();
+                }
             }
         }
-        return newInstance;
+        throw new CopyException(original.getClass().getName() + " kept changing during " + (retries + 1) + " snapshot reads");
     }
 
-    private static void addAll(final Map<String, Field> l, final Field[] fields) {
-        for (final Field field : fields) {
-            if (!field.isAccessible()) {
-                field.setAccessible(true);
+    /**
+     * @return the keys and values of the map, interleaved
+     */
+    private static Object[] entriesOf(Map<?, ?> map) {
+        Object[] entries = new Object[map.size() * 2];
+        int i = 0;
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            if (i == entries.length) { // grew since size(), weakly consistent iterators allow it
+                entries = Arrays.copyOf(entries, entries.length * 2 + 2);
             }
-            if (Modifier.isStatic(field.getModifiers())) {
-                continue;
+            entries[i++] = entry.getKey();
+            entries[i++] = entry.getValue();
+        }
+        return i == entries.length ? entries : Arrays.copyOf(entries, i);
+    }
+
+    private Object copyWithCapability(CopyCapability capability, Object original, CopyContext context) throws CopyException {
+        Object copy = capability.copy(this, original);
+        if (context.copies != null) {
+            context.copies.put(original, copy);
+        }
+        return copy;
+    }
+
+    /**
+     * resolve how the class copies itself: a registered copier, a Parcelable without generated copier, or
+     * the public clone() of a class whose copied fields are all primitive or shared
+     */
+    private CopyCapability copyCapability(Class<?> clazz) throws CopyException {
+        CopyCapability capability = capabilitiesCache.get(clazz);
+        if (capability == null) {
+            capability = CopyCapability.REFLECTION;
+            ClassCopier<Object> copier = classCopiers.get(clazz);
+            if (copier != null) {
+                capability = new CopyCapability(CopyCapability.REGISTERED, copier, null);
+            } else if (generatedCopier(clazz) != null || InstancePool.isSized(clazz) || hasFieldPolicies(clazz)) {
+                capability = CopyCapability.REFLECTION; // handled before, or policies only reflection knows
+            } else if (Parcelable.class.isAssignableFrom(clazz)) {
+                capability = new CopyCapability(CopyCapability.PARCEL, null, null);
+            } else {
+                Method clone = CopyCapability.publicClone(clazz);
+                if (clone != null && isShallowSafe(clazz)) {
+                    capability = new CopyCapability(CopyCapability.CLONE, null, clone);
+                }
             }
-            l.put(field.getName(), field);
+            capability = capabilitiesCache.putIfAbsent(clazz, capability);
         }
+        return capability;
     }
 
     /**
-     * @param c class
-     * @return all non-static fileds
+     * @return true if no field of the class is skipped or deep copied, so a shallow copy is a full copy
      */
-    static Map<String, Field> allNonStaticFields(final Class<?> c) {
-        Map<String, Field> fieldList = nonStaticFieldsCache.get(c);
-        if (fieldList == null) {
-            fieldList = new HashMap<>();
-            final Field[] fields = c.getDeclaredFields();
-            addAll(fieldList, fields);
-            Class<?> sc = c;
-            while ((sc = sc.getSuperclass()) != Object.class && sc != null) {
-                addAll(fieldList, sc.getDeclaredFields());
+    private boolean isShallowSafe(Class<?> clazz) throws CopyException {
+        FieldAction[] actions = fieldActions(clazz);
+        if (actions.length != ClassDescriptor.of(clazz).fields.length) {
+            return false;
+        }
+        for (int i = 0; i < actions.length; i++) {
+            if (actions[i].action > FieldAction.SHARE) {
+                return false;
             }
-            nonStaticFieldsCache.putIfAbsent(c, fieldList);
         }
-        return fieldList;
+        return true;
     }
 
-    private void copyFields(Collection<Field> fields, Object from, Object to) throws CopyException {
-        if (fields == null || fields.size() <= 0) {
+    /**
+     * copy a known collection through its public api, the elements are copied in one array
+     *
+     * @param elements the elements of the original, replaced by their copies
+     */
+    private Object copyCollection(Collection<?> original, Object[] elements, CopyContext context) throws CopyException {
+        Collection<Object> copy = newCollection(original, elements.length);
+        if (context.copies != null) {
+            context.copies.put(original, copy);
+        }
+        DispatchSite site = new DispatchSite();
+        for (int i = 0; i < elements.length; i++) {
+            elements[i] = copyInternal(elements[i], context, site);
+        }
+        copy.addAll(Arrays.asList(elements));
+        return copy;
+    }
+
+    /**
+     * copy a known map through its public api, the copied keys are rehashed
+     */
+    private Object copyMap(Map<?, ?> original, CopyContext context) throws CopyException {
+        Map<Object, Object> copy = newMap(original, original.size());
+        if (context.copies != null) {
+            context.copies.put(original, copy);
+        }
+        DispatchSite keySite = new DispatchSite();
+        DispatchSite valueSite = new DispatchSite();
+        for (Map.Entry<?, ?> entry : original.entrySet()) {
+            copy.put(copyInternal(entry.getKey(), context, keySite), copyInternal(entry.getValue(), context, valueSite));
+        }
+        return copy;
+    }
+
+    /**
+     * copy a known map from its keys and values read by {@link #entriesOf}
+     */
+    private Object copyMap(Map<?, ?> original, Object[] entries, CopyContext context) throws CopyException {
+        Map<Object, Object> copy = newMap(original, entries.length / 2);
+        if (context.copies != null) {
+            context.copies.put(original, copy);
+        }
+        DispatchSite keySite = new DispatchSite();
+        DispatchSite valueSite = new DispatchSite();
+        for (int i = 0; i < entries.length; i += 2) {
+            copy.put(copyInternal(entries[i], context, keySite), copyInternal(entries[i + 1], context, valueSite));
+        }
+        return copy;
+    }
+
+    /**
+     * share a known collection with the previous version when the copy of every element, paired in
+     * iteration order, is identical to the previous one, else build a new collection of the copies
+     */
+    private Object copyCollectionShared(Collection<?> original, Collection<?> previous, CopyContext context) throws CopyException {
+        Object[] elements = original.toArray();
+        Object[] last = previous.toArray();
+        boolean changed = elements.length != last.length;
+        for (int i = 0; i < elements.length; i++) {
+            Object lastElement = i < last.length ? last[i] : null;
+            elements[i] = copyShared(elements[i], lastElement, context);
+            changed |= elements[i] != lastElement;
+        }
+        if (!changed) {
+            return previous;
+        }
+        Collection<Object> copy = newCollection(original, elements.length);
+        copy.addAll(Arrays.asList(elements));
+        return copy;
+    }
+
+    /**
+     * share a known map with the previous version when the copies of all keys and values, paired in
+     * iteration order, are identical to the previous ones, else put the copies into a new map
+     */
+    private Object copyMapShared(Map<?, ?> original, Map<?, ?> previous, CopyContext context) throws CopyException {
+        Object[] entries = new Object[original.size() * 2];
+        Iterator<? extends Map.Entry<?, ?>> last = previous.entrySet().iterator();
+        boolean changed = original.size() != previous.size();
+        int i = 0;
+        for (Map.Entry<?, ?> entry : original.entrySet()) {
+            Map.Entry<?, ?> lastEntry = last.hasNext() ? last.next() : null;
+            Object lastKey = lastEntry != null ? lastEntry.getKey() : null;
+            Object lastValue = lastEntry != null ? lastEntry.getValue() : null;
+            entries[i] = copyShared(entry.getKey(), lastKey, context);
+            entries[i + 1] = copyShared(entry.getValue(), lastValue, context);
+            changed |= entries[i] != lastKey || entries[i + 1] != lastValue;
+            i += 2;
+        }
+        if (!changed) {
+            return previous;
+        }
+        Map<Object, Object> copy = newMap(original, entries.length / 2);
+        for (i = 0; i < entries.length; i += 2) {
+            copy.put(entries[i], entries[i + 1]);
+        }
+        return copy;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Collection<Object> newCollection(Collection<?> original, int size) {
+        return (Collection<Object>) InstancePool.obtain(original.getClass(), size);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Object, Object> newMap(Map<?, ?> original, int size) {
+        if (isAccessOrdered(original)) { // putting in iteration order keeps the access order
+            return new LinkedHashMap<>(size * 4 / 3 + 1, 0.75f, true);
+        }
+        return (Map<Object, Object>) InstancePool.obtain(original.getClass(), size);
+    }
+
+    /**
+     * @return true for a {@link LinkedHashMap} ordered by access, false if that can not be told
+     */
+    private static boolean isAccessOrdered(Map<?, ?> map) {
+        if (ACCESS_ORDER == null || map.getClass() != LinkedHashMap.class) {
+            return false;
+        }
+        try {
+            return ACCESS_ORDER.getBoolean(map);
+        } catch (IllegalAccessException e) {
+            return false;
+        }
+    }
+
+    private static Field accessOrderField() {
+        try {
+            Field field = LinkedHashMap.class.getDeclaredField("accessOrder");
+            field.setAccessible(true);
+            return field;
+        } catch (NoSuchFieldException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private Object copyArray(Object original, CopyContext context) throws CopyException {
+        Class<?> clazz = original.getClass();
+
+        final int length = Array.getLength(original);
+        if (!clazz.getComponentType().isPrimitive()) {
+            // clone in bulk, then replace only the elements that are not shared
+            final Object[] copy = ((Object[]) original).clone();
+            if (context.copies != null) {
+                context.copies.put(original, copy);
+            }
+            DispatchSite site = new DispatchSite();
+            for (int i = 0; i < length; i++) {
+                if (copy[i] != null) {
+                    copy[i] = copyInternal(copy[i], context, site); // shared elements come back as they are
+                }
+            }
+            return copy;
+        }
+
+        final Object newInstance = Array.newInstance(clazz.getComponentType(), length);
+        if (context.copies != null) {
+            context.copies.put(original, newInstance);
+        }
+        //noinspection SuspiciousSystemArraycopy
+        System.arraycopy(original, 0, newInstance, 0, length);
+        return newInstance;
+    }
+
+    private void prewarmInternal(Type type, Set<Class<?>> visited) throws CopyException {
+        if (type instanceof ParameterizedType) {
+            prewarmInternal(((ParameterizedType) type).getRawType(), visited);
+            for (Type argument : ((ParameterizedType) type).getActualTypeArguments()) {
+                prewarmInternal(argument, visited);
+            }
+            return;
+        } else if (type instanceof GenericArrayType) {
+            prewarmInternal(((GenericArrayType) type).getGenericComponentType(), visited);
+            return;
+        } else if (!(type instanceof Class)) {
+            return; // type variables and wildcards are resolved by the copy of the actual values
+        }
+
+        Class<?> clazz = (Class<?>) type;
+        if (clazz.isPrimitive() || Jock.class.equals(clazz) || !visited.add(clazz)) {
+            return;
+        }
+        if (clazz.isArray()) {
+            prewarmInternal(clazz.getComponentType(), visited);
+            return;
+        }
+
+        Sedes.prewarm(clazz);
+        if (isImmutable(clazz) || shouldNotCopy(clazz) || clazz.isInterface() || clazz.isEnum()) {
+            return;
+        }
+        InstancePool.prepare(clazz);
+        generatedCopier(clazz);
+        for (FieldAction action : fieldActions(clazz)) {
+            if (action.policy != CopyPolicy.SKIP) {
+                prewarmInternal(action.field.getGenericType(), visited);
+            }
+        }
+    }
+
+    private void releaseInternal(Object object, IdentityHashMap<Object, Object> released) throws CopyException {
+        if (object == null || released.put(object, object) != null) {
+            return;
+        }
+
+        Class<?> clazz = object.getClass();
+        if (Jock.class.equals(clazz) || isShared(object)) {
             return;
         }
 
-        for (Field field : fields) {
-            if (field == null) {
-                continue;
+        if (clazz.isArray()) {
+            if (!clazz.getComponentType().isPrimitive()) {
+                for (Object item : (Object[]) object) {
+                    releaseInternal(item, released);
+                }
             }
+            return;
+        }
 
+        if ((object instanceof Collection || object instanceof Map) && !InstancePool.isSized(clazz)) {
+            return; // may be unmodifiable or hold more state, so it is neither cleared nor are its elements recycled
+        }
+
+        if (object instanceof Collection) {
+            Collection<?> collection = (Collection<?>) object;
+            for (Object item : collection) {
+                releaseInternal(item, released);
+            }
+            collection.clear();
+        } else if (object instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) object;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                releaseInternal(entry.getKey(), released);
+                releaseInternal(entry.getValue(), released);
+            }
+            map.clear();
+        } else if (copyCapability(clazz).isOpaque()) {
+            return; // the class made the copy, its internals are none of our business
+        } else {
             try {
-                field.setAccessible(true);
-                field.set(to, copyInternal(field.get(from)));
+                FieldAction[] actions = fieldActions(clazz);
+                for (int i = 0; i < actions.length; i++) {
+                    if (actions[i].action == FieldAction.DEEP) {
+                        releaseInternal(actions[i].field.get(object), released);
+                    }
+                }
+                Field[] fields = ClassDescriptor.of(clazz).fields;
+                if (actions.length != fields.length) {
+                    return; // a copy does not write skipped fields, a reset instance would lose their initial values
+                }
+                // reset so the pooled instance does not hold the released graph
+                for (int i = 0; i < fields.length; i++) {
+                    fields[i].set(object, InstancePool.defaultValue(fields[i].getType()));
+                }
             } catch (IllegalAccessException e) {
                 e.printStackTrace();
             }
         }
+
+        InstancePool.recycle(object);
+    }
+
+    /**
+     * @param block the primitives copied by value, the first actions
+     */
+    private void copyFields(FieldAction[] actions, PrimitiveBlock block, Object from, Object to, CopyContext context) throws CopyException {
+        try {
+            block.copy(from, to);
+            for (int i = block.count; i < actions.length; i++) {
+                FieldAction action = actions[i];
+                switch (action.action) {
+                    case FieldAction.SHARE:
+                        action.field.set(to, action.field.get(from));
+                        break;
+                    case FieldAction.DEEP:
+                        action.field.set(to, copyInternal(action.field.get(from), context, action.site));
+                        break;
+                    case FieldAction.CUSTOM:
+                        action.field.set(to, action.copier.copy(this, action.field.get(from)));
+                        break;
+                }
+            }
+        } catch (IllegalAccessException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @param c class
+     * @return the fields of {@link #fieldActions} copied by value, grouped by kind
+     */
+    private PrimitiveBlock primitiveBlock(Class<?> c) throws CopyException {
+        PrimitiveBlock block = primitiveBlocksCache.get(c);
+        if (block == null) {
+            FieldAction[] actions = fieldActions(c);
+            Field[] fields = new Field[actions.length];
+            int[] kinds = new int[actions.length];
+            for (int i = 0; i < actions.length; i++) {
+                fields[i] = actions[i].field;
+                kinds[i] = actions[i].action <= FieldAction.COPY_PRIMITIVE_MAX ? actions[i].action : ClassDescriptor.KIND_REFERENCE;
+            }
+            block = primitiveBlocksCache.putIfAbsent(c, new PrimitiveBlock(fields, kinds));
+        }
+        return block;
+    }
+
+    /**
+     * @param c class
+     * @return the copied non-static fields of the class with their resolved actions, primitives first
+     */
+    FieldAction[] fieldActions(final Class<?> c) throws CopyException {
+        FieldAction[] actions = fieldActionsCache.get(c);
+        if (actions == null) {
+            ClassDescriptor descriptor = ClassDescriptor.of(c);
+            List<FieldAction> resolved = new ArrayList<>(descriptor.fields.length);
+            for (int i = 0; i < descriptor.fields.length; i++) {
+                FieldAction action = resolveFieldAction(descriptor.fields[i], descriptor.kinds[i]);
+                if (action.policy != CopyPolicy.SKIP) {
+                    resolved.add(action);
+                }
+            }
+            Collections.sort(resolved, (a, b) -> a.action - b.action);
+            actions = fieldActionsCache.putIfAbsent(c, resolved.toArray(new FieldAction[resolved.size()]));
+        }
+        return actions;
+    }
+
+    private FieldAction resolveFieldAction(Field field, int kind) throws CopyException {
+        CopyPolicy policy = fieldPolicies.get(field);
+        if (policy != null) {
+            return new FieldAction(field, kind, policy, fieldCopiers.get(field));
+        }
+
+        Policy annotation = field.getAnnotation(Policy.class);
+        if (annotation != null) {
+            FieldCopier copier = null;
+            if (annotation.value() == CopyPolicy.CUSTOM) {
+                copier = newFieldCopier(field, annotation.copier());
+            }
+            return new FieldAction(field, kind, annotation.value(), copier);
+        }
+
+        // platform classes mark their internals transient for custom serialization, not for copying
+        if (Modifier.isTransient(field.getModifiers()) && !isPlatformClass(field.getDeclaringClass())) {
+            return new FieldAction(field, kind, transientPolicy, null);
+        }
+
+        return new FieldAction(field, kind, CopyPolicy.DEEP, null);
+    }
+
+    /**
+     * generated copiers only know the annotated policies, classes with programmatic policies are reflected
+     */
+    @SuppressWarnings("unchecked")
+    private GeneratedCopier<Object> generatedCopier(Class<?> clazz) {
+        Object copier = generatedCopiersCache.get(clazz);
+        if (copier == null) {
+            copier = Generated.copier(clazz);
+            if (copier == null || transientPolicy != CopyPolicy.SKIP || hasFieldPolicies(clazz)) {
+                copier = NO_GENERATED_COPIER;
+            }
+            copier = generatedCopiersCache.putIfAbsent(clazz, copier);
+        }
+        return copier == NO_GENERATED_COPIER ? null : (GeneratedCopier<Object>) copier;
+    }
+
+    private boolean hasFieldPolicies(Class<?> clazz) {
+        for (Field field : fieldPolicies.keySet()) {
+            if (field.getDeclaringClass().isAssignableFrom(clazz)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static FieldCopier newFieldCopier(Field field, Class<? extends FieldCopier> copierClazz) throws CopyException {
+        if (copierClazz == FieldCopier.class) {
+            throw new CopyException("no copier declared for custom field " + field);
+        }
+        try {
+            return copierClazz.newInstance();
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new CopyException("can not create copier " + copierClazz.getName() + " for field " + field);
+        }
+    }
+
+    private static boolean isPlatformClass(Class<?> clazz) {
+        String name = clazz.getName();
+        return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("android.")
+                || name.startsWith("dalvik.") || name.startsWith("libcore.") || name.startsWith("sun.");
+    }
+
+    private static Field declaredField(Class<?> clazz, String fieldName) {
+        Field field;
+        try {
+            field = clazz.getDeclaredField(fieldName);
+        } catch (NoSuchFieldException e) {
+            throw new IllegalArgumentException("no field " + fieldName + " in " + clazz.getName());
+        }
+        if (Modifier.isStatic(field.getModifiers())) {
+            throw new IllegalArgumentException("static field " + fieldName + " is never copied");
+        }
+        return field;
     }
 
     private void registerJdkImmutableClasses() {
-        immutableClasses.add(String.class);
+        immutableClasses.addAll(ClassDescriptor.JDK_IMMUTABLE_TYPES);
 
-        immutableClasses.add(Boolean.class);
         immutableClasses.add(Boolean.TYPE);
-        immutableClasses.add(Character.class);
         immutableClasses.add(Character.TYPE);
-        immutableClasses.add(Byte.class);
         immutableClasses.add(Byte.TYPE);
-        immutableClasses.add(Short.class);
         immutableClasses.add(Short.TYPE);
-        immutableClasses.add(Integer.class);
         immutableClasses.add(Integer.TYPE);
-        immutableClasses.add(Long.class);
         immutableClasses.add(Long.TYPE);
-        immutableClasses.add(Float.class);
         immutableClasses.add(Float.TYPE);
-        immutableClasses.add(Double.class);
         immutableClasses.add(Double.TYPE);
-
-        immutableClasses.add(BigDecimal.class);
-        immutableClasses.add(BigInteger.class);
-        immutableClasses.add(URI.class);
-        immutableClasses.add(URL.class);
-        immutableClasses.add(UUID.class);
-        immutableClasses.add(Pattern.class);
     }
 
     private void registerIgnoredClasses() {
@@ -206,4 +1312,42 @@ public class Jock {
         ignoredClasses.add(Void.class);
     }
 
+    /**
+     * the read of the own state of one object, see {@link #readConsistently}
+     */
+    private interface SnapshotRead<R> {
+        R read() throws IllegalAccessException;
+    }
+
+    /**
+     * the resolved kind of a class
+     */
+    private static final class Dispatch {
+        final Class<?> clazz;
+        final int kind;
+
+        Dispatch(Class<?> clazz, int kind) {
+            this.clazz = clazz;
+            this.kind = kind;
+        }
+    }
+
+    /**
+     * a monomorphic inline cache of a field or container, the dispatch of the last class seen there, so a
+     * site of one class resolves it with a single compare. a race only costs a lookup, a dispatch is immutable
+     */
+    static final class DispatchSite {
+        private Dispatch last;
+    }
+
+    /**
+     * the resolved class of the last root of a batch
+     */
+    private static final class BatchRoots {
+        Class<?> clazz;
+        boolean plain; // copied field by field, without a generated copier
+        FieldAction[] actions;
+        PrimitiveBlock block;
+    }
+
 }
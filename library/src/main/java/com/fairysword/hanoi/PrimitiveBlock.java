@@ -0,0 +1,320 @@
+package com.fairysword.hanoi;
+
+import android.os.Parcel;
+
+import java.lang.reflect.Field;
+
+/**
+ * The primitive fields of a class grouped by kind, copied and encoded as one block with a loop per kind
+ * through the typed {@link Field} accessors, so no value is boxed and no field is dispatched on its own.
+ * <p>
+ * In a {@link Sedes} payload the block holds longs, doubles, ints and floats, then shorts and chars packed two
+ * to an int, then bytes and booleans packed four to an int, each kind in field order.
+ */
+final class PrimitiveBlock {
+
+    private static final Field[] NONE = new Field[0];
+
+    final Field[] longFields;
+    final Field[] doubleFields;
+    final Field[] intFields;
+    final Field[] floatFields;
+    final Field[] shortFields;
+    final Field[] charFields;
+    final Field[] byteFields;
+    final Field[] booleanFields;
+    final int count;
+    final int byteCount;
+
+    /**
+     * @param fields the fields, in field order
+     * @param kinds  the {@link ClassDescriptor} kind of each field, fields of other kinds are not in the block
+     */
+    PrimitiveBlock(Field[] fields, int[] kinds) {
+        longFields = fieldsOfKind(fields, kinds, ClassDescriptor.KIND_LONG);
+        doubleFields = fieldsOfKind(fields, kinds, ClassDescriptor.KIND_DOUBLE);
+        intFields = fieldsOfKind(fields, kinds, ClassDescriptor.KIND_INT);
+        floatFields = fieldsOfKind(fields, kinds, ClassDescriptor.KIND_FLOAT);
+        shortFields = fieldsOfKind(fields, kinds, ClassDescriptor.KIND_SHORT);
+        charFields = fieldsOfKind(fields, kinds, ClassDescriptor.KIND_CHAR);
+        byteFields = fieldsOfKind(fields, kinds, ClassDescriptor.KIND_BYTE);
+        booleanFields = fieldsOfKind(fields, kinds, ClassDescriptor.KIND_BOOLEAN);
+        count = longFields.length + doubleFields.length + intFields.length + floatFields.length
+                + shortFields.length + charFields.length + byteFields.length + booleanFields.length;
+        byteCount = byteCount(kinds);
+    }
+
+    private static Field[] fieldsOfKind(Field[] fields, int[] kinds, int kind) {
+        int n = 0;
+        for (int i = 0; i < kinds.length; i++) {
+            if (kinds[i] == kind) {
+                n++;
+            }
+        }
+        if (n == 0) {
+            return NONE;
+        }
+        Field[] ofKind = new Field[n];
+        n = 0;
+        for (int i = 0; i < kinds.length; i++) {
+            if (kinds[i] == kind) {
+                ofKind[n++] = fields[i];
+            }
+        }
+        return ofKind;
+    }
+
+    /**
+     * @param kinds the {@link ClassDescriptor} kind of each field
+     * @return the bytes of the block of the primitive fields in a payload
+     */
+    static int byteCount(int[] kinds) {
+        int wide = 0;
+        int narrow = 0;
+        int halves = 0;
+        int bytes = 0;
+        for (int i = 0; i < kinds.length; i++) {
+            switch (kinds[i]) {
+                case ClassDescriptor.KIND_LONG:
+                case ClassDescriptor.KIND_DOUBLE:
+                    wide++;
+                    break;
+                case ClassDescriptor.KIND_INT:
+                case ClassDescriptor.KIND_FLOAT:
+                    narrow++;
+                    break;
+                case ClassDescriptor.KIND_SHORT:
+                case ClassDescriptor.KIND_CHAR:
+                    halves++;
+                    break;
+                case ClassDescriptor.KIND_BYTE:
+                case ClassDescriptor.KIND_BOOLEAN:
+                    bytes++;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return 8 * wide + 4 * narrow + 4 * ((halves + 1) / 2) + 4 * ((bytes + 3) / 4);
+    }
+
+    /**
+     * copy
+     */
+
+    void copy(Object from, Object to) throws IllegalAccessException {
+        for (Field field : longFields) {
+            field.setLong(to, field.getLong(from));
+        }
+        for (Field field : doubleFields) {
+            field.setDouble(to, field.getDouble(from));
+        }
+        for (Field field : intFields) {
+            field.setInt(to, field.getInt(from));
+        }
+        for (Field field : floatFields) {
+            field.setFloat(to, field.getFloat(from));
+        }
+        for (Field field : shortFields) {
+            field.setShort(to, field.getShort(from));
+        }
+        for (Field field : charFields) {
+            field.setChar(to, field.getChar(from));
+        }
+        for (Field field : byteFields) {
+            field.setByte(to, field.getByte(from));
+        }
+        for (Field field : booleanFields) {
+            field.setBoolean(to, field.getBoolean(from));
+        }
+    }
+
+    /**
+     * write
+     */
+
+    void write(Parcel p, Object object) throws IllegalAccessException {
+        for (Field field : longFields) {
+            p.writeLong(field.getLong(object));
+        }
+        for (Field field : doubleFields) {
+            p.writeDouble(field.getDouble(object));
+        }
+        for (Field field : intFields) {
+            p.writeInt(field.getInt(object));
+        }
+        for (Field field : floatFields) {
+            p.writeFloat(field.getFloat(object));
+        }
+
+        int word = 0;
+        int n = 0;
+        for (Field field : shortFields) {
+            word |= (field.getShort(object) & 0xffff) << (n << 4);
+            if (++n == 2) {
+                p.writeInt(word);
+                word = 0;
+                n = 0;
+            }
+        }
+        for (Field field : charFields) {
+            word |= field.getChar(object) << (n << 4);
+            if (++n == 2) {
+                p.writeInt(word);
+                word = 0;
+                n = 0;
+            }
+        }
+        if (n > 0) {
+            p.writeInt(word);
+            word = 0;
+            n = 0;
+        }
+
+        for (Field field : byteFields) {
+            word |= (field.getByte(object) & 0xff) << (n << 3);
+            if (++n == 4) {
+                p.writeInt(word);
+                word = 0;
+                n = 0;
+            }
+        }
+        for (Field field : booleanFields) {
+            word |= (field.getBoolean(object) ? 1 : 0) << (n << 3);
+            if (++n == 4) {
+                p.writeInt(word);
+                word = 0;
+                n = 0;
+            }
+        }
+        if (n > 0) {
+            p.writeInt(word);
+        }
+    }
+
+    /**
+     * read
+     */
+
+    void read(Parcel p, Object object) throws IllegalAccessException {
+        for (Field field : longFields) {
+            field.setLong(object, p.readLong());
+        }
+        for (Field field : doubleFields) {
+            field.setDouble(object, p.readDouble());
+        }
+        for (Field field : intFields) {
+            field.setInt(object, p.readInt());
+        }
+        for (Field field : floatFields) {
+            field.setFloat(object, p.readFloat());
+        }
+
+        int word = 0;
+        int n = 0;
+        for (Field field : shortFields) {
+            if (n == 0) {
+                word = p.readInt();
+            }
+            field.setShort(object, (short) (word >>> (n << 4)));
+            n = (n + 1) & 1;
+        }
+        for (Field field : charFields) {
+            if (n == 0) {
+                word = p.readInt();
+            }
+            field.setChar(object, (char) (word >>> (n << 4)));
+            n = (n + 1) & 1;
+        }
+
+        n = 0;
+        for (Field field : byteFields) {
+            if (n == 0) {
+                word = p.readInt();
+            }
+            field.setByte(object, (byte) (word >>> (n << 3)));
+            n = (n + 1) & 3;
+        }
+        for (Field field : booleanFields) {
+            if (n == 0) {
+                word = p.readInt();
+            }
+            field.setBoolean(object, (word >>> (n << 3) & 0xff) != 0);
+            n = (n + 1) & 3;
+        }
+    }
+
+    /**
+     * read the block written for other fields than the local ones, boxed, the class changed between writer
+     * and reader
+     *
+     * @param kinds the {@link ClassDescriptor} kind of each written field
+     * @return the value of each primitive field, null for the other fields
+     */
+    static Object[] readValues(Parcel p, int[] kinds) {
+        Object[] values = new Object[kinds.length];
+        for (int i = 0; i < kinds.length; i++) {
+            if (kinds[i] == ClassDescriptor.KIND_LONG) {
+                values[i] = p.readLong();
+            }
+        }
+        for (int i = 0; i < kinds.length; i++) {
+            if (kinds[i] == ClassDescriptor.KIND_DOUBLE) {
+                values[i] = p.readDouble();
+            }
+        }
+        for (int i = 0; i < kinds.length; i++) {
+            if (kinds[i] == ClassDescriptor.KIND_INT) {
+                values[i] = p.readInt();
+            }
+        }
+        for (int i = 0; i < kinds.length; i++) {
+            if (kinds[i] == ClassDescriptor.KIND_FLOAT) {
+                values[i] = p.readFloat();
+            }
+        }
+
+        int word = 0;
+        int n = 0;
+        for (int i = 0; i < kinds.length; i++) {
+            if (kinds[i] == ClassDescriptor.KIND_SHORT) {
+                if (n == 0) {
+                    word = p.readInt();
+                }
+                values[i] = (short) (word >>> (n << 4));
+                n = (n + 1) & 1;
+            }
+        }
+        for (int i = 0; i < kinds.length; i++) {
+            if (kinds[i] == ClassDescriptor.KIND_CHAR) {
+                if (n == 0) {
+                    word = p.readInt();
+                }
+                values[i] = (char) (word >>> (n << 4));
+                n = (n + 1) & 1;
+            }
+        }
+
+        n = 0;
+        for (int i = 0; i < kinds.length; i++) {
+            if (kinds[i] == ClassDescriptor.KIND_BYTE) {
+                if (n == 0) {
+                    word = p.readInt();
+                }
+                values[i] = (byte) (word >>> (n << 3));
+                n = (n + 1) & 3;
+            }
+        }
+        for (int i = 0; i < kinds.length; i++) {
+            if (kinds[i] == ClassDescriptor.KIND_BOOLEAN) {
+                if (n == 0) {
+                    word = p.readInt();
+                }
+                values[i] = (word >>> (n << 3) & 0xff) != 0;
+                n = (n + 1) & 3;
+            }
+        }
+        return values;
+    }
+
+}
@@ -0,0 +1,15 @@
+package com.fairysword.hanoi;
+
+/**
+ * The executor lane of an asynchronous copy or serialization, see {@link HanoiExecutor}
+ */
+public enum Priority {
+    /**
+     * small copies a user is waiting for
+     */
+    INTERACTIVE,
+    /**
+     * large snapshots nobody is waiting for, never delays {@link #INTERACTIVE} tasks
+     */
+    BACKGROUND
+}
@@ -0,0 +1,115 @@
+package com.fairysword.hanoi;
+
+import android.os.Parcel;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the records of a {@link RecordBatchWriter} payload one at a time, records that are not needed
+ * can be skipped without being decoded. not thread safe
+ */
+public final class RecordBatchReader implements Iterator<Object> {
+
+    private final SedesContext context;
+    private final int count;
+    private Parcel parcel;
+    private int position;
+    private int index = 0;
+
+    /**
+     * @param bytes a payload of {@link RecordBatchWriter#finish}
+     * @throws IllegalArgumentException if the payload is not a batch
+     */
+    public RecordBatchReader(byte[] bytes) {
+        bytes = Sedes.decompressIfNeeded(bytes);
+        if (bytes == null || bytes.length < RecordBatchWriter.HEADER_SIZE) {
+            throw new IllegalArgumentException("not a record batch");
+        }
+
+        parcel = Parcel.obtain();
+        parcel.unmarshall(bytes, 0, bytes.length);
+        parcel.setDataPosition(0);
+        if (parcel.readInt() != RecordBatchWriter.MAGIC) {
+            recycle();
+            throw new IllegalArgumentException("not a record batch");
+        }
+        count = parcel.readInt();
+        int dictionaryPosition = parcel.readInt();
+        int records = parcel.dataPosition();
+        parcel.setDataPosition(dictionaryPosition);
+        context = new SedesContext(null, TypeDictionary.readFrom(parcel));
+        parcel.setDataPosition(records);
+        Sedes.readPayloadHeader(parcel, context);
+        position = parcel.dataPosition();
+    }
+
+    /**
+     * @return the number of records in the batch
+     */
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return index < count;
+    }
+
+    /**
+     * @return the next record, null if its class can not be found
+     */
+    @Override
+    public Object next() {
+        int length = nextLength();
+        parcel.setDataPosition(position + 4);
+        Object record = null;
+        try {
+            record = Sedes.readObject(parcel, context);
+        } catch (ClassNotFoundException e) {
+            e.printStackTrace();
+        } finally {
+            advance(length);
+        }
+        return record;
+    }
+
+    /**
+     * skip the next record without decoding it
+     */
+    public void skip() {
+        advance(nextLength());
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("remove");
+    }
+
+    /**
+     * release the buffer, the reader can not be used any more
+     */
+    public void recycle() {
+        if (parcel != null) {
+            parcel.recycle();
+            parcel = null;
+        }
+    }
+
+    private int nextLength() {
+        if (parcel == null) {
+            throw new IllegalStateException("reader already recycled");
+        }
+        if (index >= count) {
+            throw new NoSuchElementException();
+        }
+        parcel.setDataPosition(position);
+        return parcel.readInt();
+    }
+
+    private void advance(int length) {
+        position += 4 + length;
+        index++;
+    }
+
+}
@@ -0,0 +1,98 @@
+package com.fairysword.hanoi;
+
+import android.os.Parcel;
+
+/**
+ * Packs many records into one {@link Sedes} payload, read it back with {@link RecordBatchReader}:
+ * <pre>
+ * magic(4) recordCount(4) dictionaryPosition(4)
+ * payloadMagic(4) layoutTablePosition(4) stringTablePosition(4)
+ * repeated: recordLength(4) record(recordLength)
+ * dictionary: typeCount(4) typeNames
+ * layout table
+ * string table, if {@link Sedes#setStringTable} is enabled
+ * </pre>
+ * all records share one dictionary of class names, so a type costs its name once per batch, and one
+ * string table. both follow the records so they can be written in a single pass. not thread safe
+ */
+public final class RecordBatchWriter {
+
+    /**
+     * read as bytes this is 'H', 'N', 'B', 0xFA, negative and not -1 like the magic of
+     * {@link com.fairysword.hanoi.codec.CompressedFrames}, so it never starts a single Sedes payload
+     */
+    static final int MAGIC = 0xFA424E48;
+    static final int HEADER_SIZE = 12;
+
+    private final TypeDictionary types = new TypeDictionary();
+    private final SedesContext context = new SedesContext(null, types);
+    private final int slots;
+    private Parcel parcel = Parcel.obtain();
+    private int count = 0;
+
+    public RecordBatchWriter() {
+        parcel.writeInt(MAGIC);
+        parcel.writeInt(0); // record count, patched by finish
+        parcel.writeInt(0); // dictionary position, patched by finish
+        slots = Sedes.beginPayload(parcel, context);
+    }
+
+    /**
+     * @param record the record to append
+     */
+    public void write(Object record) {
+        if (parcel == null) {
+            throw new IllegalStateException("batch already finished");
+        }
+        int lengthPosition = parcel.dataPosition();
+        parcel.writeInt(0);
+        Sedes.writeObject(parcel, context, record);
+        int end = parcel.dataPosition();
+        parcel.setDataPosition(lengthPosition);
+        parcel.writeInt(end - lengthPosition - 4);
+        parcel.setDataPosition(end);
+        count++;
+    }
+
+    /**
+     * @return the number of records written
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * write the dictionary and release the buffer, the writer can not be used any more
+     *
+     * @return the payload of the batch, compressed as set by {@link Sedes#setCompression}
+     */
+    public byte[] finish() {
+        if (parcel == null) {
+            throw new IllegalStateException("batch already finished");
+        }
+        try {
+            int dictionaryPosition = parcel.dataPosition();
+            types.writeTo(parcel);
+            Sedes.endPayload(parcel, context, slots);
+            int end = parcel.dataPosition();
+            parcel.setDataPosition(4);
+            parcel.writeInt(count);
+            parcel.writeInt(dictionaryPosition);
+            parcel.setDataPosition(end);
+            return Sedes.compressIfEnabled(parcel.marshall());
+        } finally {
+            recycle();
+        }
+    }
+
+    /**
+     * release the buffer without producing a payload
+     */
+    public void recycle() {
+        if (parcel != null) {
+            parcel.recycle();
+            parcel = null;
+        }
+    }
+
+}
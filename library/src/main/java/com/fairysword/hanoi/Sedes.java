@@ -1,15 +1,32 @@
 package com.fairysword.hanoi;
 
 import android.os.Parcel;
+import android.os.Parcelable;
 
+import com.fairysword.hanoi.codec.BlockCodec;
+import com.fairysword.hanoi.codec.CompressedFrames;
+import com.fairysword.hanoi.generated.Generated;
+import com.fairysword.hanoi.generated.GeneratedSedes;
 import com.fairysword.hanoi.instance.InstancePool;
+import com.fairysword.hanoi.utils.ClassCache;
 import com.fairysword.hanoi.utils.Hack;
 
+import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Serializer / Deserializer using {@link Parcel}
@@ -19,6 +36,58 @@ public class Sedes {
 
     static Map<String, Class<?>> primitiveTypes = new HashMap<>();
     private static Map<Class<?>, SerializableHandler> serializableHandlerMap = new HashMap<>();
+    // weak values, the names must not pin the classes
+    private static final Map<String, WeakReference<Class<?>>> classesByName = new ConcurrentHashMap<>();
+
+    private static final ClassCache<Object[]> enumConstants = new ClassCache<>("sedes enum constants");
+    private static final ClassCache<Dispatch> dispatches = new ClassCache<>("sedes dispatch");
+
+    // how a value of a class is written and read, resolved once per class by dispatchOf
+    private static final int DISPATCH_ENUM = 0;
+    private static final int DISPATCH_BUFFER = 1;
+    private static final int DISPATCH_ARRAY = 2;
+    private static final int DISPATCH_COLLECTION = 3;
+    private static final int DISPATCH_MAP = 4;
+    private static final int DISPATCH_STRING = 5;
+    private static final int DISPATCH_HANDLER = 6;
+    private static final int DISPATCH_GENERATED = 7;
+    private static final int DISPATCH_PARCELABLE = 8;
+    private static final int DISPATCH_OBJECT = 9;
+
+    // written before each value, a singleton is written by class only
+    private static final int VALUE_NULL = 0;
+    static final int VALUE_PRESENT = 1;
+    private static final int VALUE_SINGLETON = 2;
+
+    private static volatile BlockCodec compressionCodec = null;
+    private static volatile int compressionThreshold = 0;
+
+    /**
+     * written in place of the size of an indexed container, followed by the size, the end position and the
+     * elements, the index table ends at the end position
+     */
+    static final int INDEXED = -2;
+    static final int INDEX_ENTRY_SIZE = 4;
+    static final int KEY_INDEX_ENTRY_SIZE = 8;
+    private static volatile int indexedMinSize = 0;
+
+    // an array or buffer moved to the attachments, followed by its handle
+    static final int ATTACHED = -3;
+    private static volatile int attachmentThreshold = 16 * 1024;
+
+    // the size of the last payload of each root class, a free guess of the next one
+    private static final ClassCache<int[]> lastPayloadSizes = new ClassCache<>("sedes payload sizes");
+    // a guess past this grows the parcel on demand instead, a wrong guess must not reserve too much
+    private static final int MAX_PRESIZE = 8 * 1024 * 1024;
+
+    /**
+     * read as bytes this is 'H', 'T', 'S', 0xFA, it starts payloads whose fields are encoded by their declared
+     * types, see {@link ClassLayout}, and is followed by the positions of the layout table and of the string
+     * table (-1 without one), which come after the root
+     */
+    static final int PAYLOAD_MAGIC = 0xFA535448;
+    static final int PAYLOAD_HEADER_SIZE = 12;
+    private static volatile boolean stringTableEnabled = false;
 
     static {
         primitiveTypes.put("char", Character.TYPE);
@@ -32,6 +101,10 @@ public class Sedes {
         primitiveTypes.put("double", Double.TYPE);
     }
 
+    static {
+        Generated.addRegisterListener(Sedes::invalidateDispatches);
+    }
+
     /**
      * atomic type serializer handler
      */
@@ -152,11 +225,7 @@ public class Sedes {
      * @return serializable bytes using {@link Parcel}
      */
     public static byte[] serialize(Object original) {
-        Parcel parcel = Parcel.obtain();
-        writeObject(parcel, original);
-        byte[] bytes = parcel.marshall();
-        parcel.recycle();
-        return bytes;
+        return serializeInternal(original, new SedesContext(null));
     }
 
     /**
@@ -165,124 +234,613 @@ public class Sedes {
      * @param bytes serializable bytes using {@link Parcel}
      * @return the instance represented by the serializable bytes
      */
-    @SuppressWarnings("TryWithIdenticalCatches")
     public static Object deserialize(byte[] bytes) {
+        return deserializeInternal(bytes, new SedesContext(null));
+    }
+
+    /**
+     * serialize with primitive arrays of at least {@link #setAttachmentThreshold} bytes and all
+     * {@link ByteBuffer}s moved out of band, the payload carries only their handles
+     *
+     * @param original    the source object
+     * @param attachments filled with the moved values, needed to deserialize the payload
+     * @return serializable bytes using {@link Parcel}
+     */
+    public static byte[] serialize(Object original, Attachments attachments) {
+        SedesContext c = new SedesContext(null);
+        c.attachments = attachments;
+        return serializeInternal(original, c);
+    }
+
+    /**
+     * @param bytes       a payload of {@link #serialize(Object, Attachments)}
+     * @param attachments the attachments of the payload. buffers are read-only views of them, arrays are
+     *                    copied out of them once
+     * @return the instance represented by the serializable bytes
+     */
+    public static Object deserialize(byte[] bytes, Attachments attachments) {
+        SedesContext c = new SedesContext(null);
+        c.attachments = attachments;
+        return deserializeInternal(bytes, c);
+    }
+
+    /**
+     * set the min size of a primitive array moved to the attachments, boolean arrays always stay inline.
+     * default is 16K
+     *
+     * @param bytes the min size in bytes
+     */
+    public static void setAttachmentThreshold(int bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("negative threshold: " + bytes);
+        }
+        attachmentThreshold = bytes;
+    }
+
+    /**
+     * estimate the size of the payload of {@link #serialize(Object)} without writing it. a payload that will be
+     * compressed is estimated by the largest frame, its raw size plus the frame headers
+     *
+     * @param original the source object
+     * @return the estimated bytes
+     */
+    public static long predictSerializedSize(Object original) {
+        return predictSerializedSize(original, SizeEstimator.DEFAULT_SAMPLE_SIZE);
+    }
+
+    /**
+     * @param original   the source object
+     * @param sampleSize containers with more elements are measured on this many elements and extrapolated
+     * @return the estimated bytes of the payload
+     */
+    public static long predictSerializedSize(Object original, int sampleSize) {
+        long size = SizeEstimator.serializedSizeOf(original, sampleSize, stringTableEnabled);
+        if (compressionCodec != null && size >= compressionThreshold) {
+            size = CompressedFrames.maxFrameSize(size, CompressedFrames.DEFAULT_BLOCK_SIZE);
+        }
+        return size;
+    }
+
+    /**
+     * compress serialized payloads with the codec, deserialize always accepts both compressed and raw payloads
+     *
+     * @param codec     the codec, null to disable compression
+     * @param threshold payloads smaller than this are left uncompressed
+     */
+    public static void setCompression(BlockCodec codec, int threshold) {
+        if (codec != null) {
+            CompressedFrames.register(codec);
+        }
+        compressionThreshold = threshold;
+        compressionCodec = codec;
+    }
+
+    /**
+     * write lists, arrays and maps of at least the size with an index, so {@link IndexedReader} can read
+     * single elements, or single values by key, without decoding the rest. the index costs 4 bytes per
+     * element and 8 bytes per map entry, deserialize always accepts both encodings
+     *
+     * @param minSize the min size of an indexed container, 0 to disable indexes
+     */
+    public static void setIndexedContainers(int minSize) {
+        if (minSize < 0) {
+            throw new IllegalArgumentException("negative min size: " + minSize);
+        }
+        indexedMinSize = minSize;
+    }
+
+    /**
+     * write every distinct string of a payload (values, field names and class names) once into a table after
+     * the root, as Latin-1 or UTF-8, and refer to it by index. deserialized graphs share one instance per
+     * distinct string
+     *
+     * @param enabled true to write string tables, off by default
+     */
+    public static void setStringTable(boolean enabled) {
+        stringTableEnabled = enabled;
+    }
+
+    /**
+     * register the canonical instance of its class, it is written by class only and read back as the same
+     * instance, see {@link Jock#registerSingleton}. enum constants are always written as their ordinal
+     *
+     * @param singleton the instance, at most one per class
+     * @throws IllegalArgumentException if another instance of the class is registered
+     */
+    public static void registerSingleton(Object singleton) {
+        Singletons.register(singleton);
+    }
+
+    /**
+     * serialize on the executor lane of the priority, cancelling the future stops the serialization
+     * between objects
+     *
+     * @param original the source object
+     * @param priority the executor lane to run on
+     * @return the future of the serializable bytes
+     */
+    public static HanoiFuture<byte[]> serializeAsync(final Object original, Priority priority) {
+        return HanoiExecutor.submit(priority, task -> serializeInternal(original, new SedesContext(task)));
+    }
+
+    /**
+     * deserialize on the executor lane of the priority, cancelling the future stops the deserialization
+     * between objects
+     *
+     * @param bytes    serializable bytes using {@link Parcel}
+     * @param priority the executor lane to run on
+     * @return the future of the instance represented by the serializable bytes
+     */
+    public static HanoiFuture<Object> deserializeAsync(final byte[] bytes, Priority priority) {
+        return HanoiExecutor.submit(priority, task -> deserializeInternal(bytes, new SedesContext(task)));
+    }
+
+    /**
+     * resolve the class name and field metadata used to serialize the class, see {@link Jock#prewarm}
+     *
+     * @param clazz the class
+     */
+    static void prewarm(Class<?> clazz) {
+        classesByName.put(clazz.getName(), new WeakReference<Class<?>>(clazz));
+        if (dispatchOf(clazz).kind == DISPATCH_OBJECT && !clazz.isInterface()) {
+            ClassLayout.of(clazz);
+        }
+    }
+
+    private static byte[] serializeInternal(Object original, SedesContext c) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            return serializeWith(parcel, original, c);
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    /**
+     * @param parcel an empty parcel, left filled with the raw payload
+     */
+    static byte[] serializeWith(Parcel parcel, Object original, SedesContext c) {
+        // one allocation instead of repeated growth, sized like the last payload of the same root class
+        Class<?> rootClazz = getTypeClass(original);
+        int[] lastSize = lastPayloadSizes.get(rootClazz);
+        if (lastSize != null && lastSize[0] > parcel.dataCapacity()) {
+            parcel.setDataCapacity(Math.min(lastSize[0], MAX_PRESIZE));
+        }
+        int slots = beginPayload(parcel, c);
+        writeObject(parcel, c, original);
+        endPayload(parcel, c, slots);
+        if (lastSize == null) {
+            lastSize = lastPayloadSizes.putIfAbsent(rootClazz, new int[1]);
+        }
+        lastSize[0] = parcel.dataSize();
+        return compressIfEnabled(parcel.marshall());
+    }
+
+    private static Object deserializeInternal(byte[] bytes, SedesContext c) {
+        Parcel p = Parcel.obtain();
+        try {
+            return deserializeWith(p, bytes, c);
+        } finally {
+            p.recycle();
+        }
+    }
+
+    /**
+     * @param p a parcel, its content is replaced by the payload
+     */
+    static Object deserializeWith(Parcel p, byte[] bytes, SedesContext c) {
+        bytes = decompressIfNeeded(bytes);
         if (bytes == null) {
             return null;
         }
 
-        Parcel p = Parcel.obtain();
         p.unmarshall(bytes, 0, bytes.length);
         p.setDataPosition(0);
 
         Object instance = null;
         try {
-            instance = readObject(p);
+            readPayloadHeader(p, c);
+            instance = readObject(p, c);
         } catch (ClassNotFoundException e) {
             e.printStackTrace();
         }
-
-        p.recycle();
         return instance;
     }
 
+    /**
+     * @param bytes the raw payload
+     * @return the payload compressed with the codec of {@link #setCompression}, if large enough
+     */
+    static byte[] compressIfEnabled(byte[] bytes) {
+        BlockCodec codec = compressionCodec;
+        if (codec != null && bytes.length >= compressionThreshold) {
+            bytes = CompressedFrames.compress(bytes, codec, CompressedFrames.DEFAULT_BLOCK_SIZE);
+        }
+        return bytes;
+    }
+
+    /**
+     * @param bytes a raw or compressed payload
+     * @return the raw payload, null if it can not be decompressed
+     */
+    static byte[] decompressIfNeeded(byte[] bytes) {
+        if (bytes != null && CompressedFrames.isCompressed(bytes)) {
+            try {
+                return CompressedFrames.decompress(bytes);
+            } catch (IOException e) {
+                e.printStackTrace();
+                return null;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * write the payload header, the tables are collected while the root is written
+     *
+     * @return the position of the table position slots, patched by {@link #endPayload}
+     */
+    static int beginPayload(Parcel p, SedesContext c) {
+        if (!stringTableEnabled) {
+            c.strings = null;
+        } else if (c.strings != null) {
+            c.strings.clear(); // a session reuses the tables of its last payload
+        } else {
+            c.strings = new StringTable();
+        }
+        if (c.layoutIds != null) {
+            c.layoutIds.clear();
+            c.writtenLayouts.clear();
+        } else {
+            c.layoutIds = new HashMap<>();
+            c.writtenLayouts = new ArrayList<>();
+        }
+        p.writeInt(PAYLOAD_MAGIC);
+        int slots = p.dataPosition();
+        p.writeInt(0);
+        p.writeInt(-1);
+        return slots;
+    }
+
+    /**
+     * write the layout table and the string table after the root, the layouts name their fields with the
+     * strings of the table
+     */
+    static void endPayload(Parcel p, SedesContext c, int slots) {
+        int layoutsPosition = p.dataPosition();
+        writeLayouts(p, c);
+        int stringsPosition = -1;
+        if (c.strings != null) {
+            stringsPosition = p.dataPosition();
+            c.strings.writeTo(p);
+        }
+        int end = p.dataPosition();
+        p.setDataPosition(slots);
+        p.writeInt(layoutsPosition);
+        p.writeInt(stringsPosition);
+        p.setDataPosition(end);
+    }
+
+    /**
+     * load the tables of the payload at the current position, and leave the position at the root. payloads
+     * written before the header have no tables and tag every field with its type
+     */
+    static void readPayloadHeader(Parcel p, SedesContext c) {
+        int start = p.dataPosition();
+        c.layouts = null;
+        if (p.dataAvail() >= PAYLOAD_HEADER_SIZE && p.readInt() == PAYLOAD_MAGIC) {
+            int layoutsPosition = p.readInt();
+            int stringsPosition = p.readInt();
+            int root = p.dataPosition();
+            c.strings = null;
+            if (stringsPosition >= 0) {
+                p.setDataPosition(stringsPosition);
+                c.strings = StringTable.readFrom(p);
+            }
+            p.setDataPosition(layoutsPosition);
+            c.layouts = readLayouts(p, c);
+            p.setDataPosition(root);
+            return;
+        }
+        p.setDataPosition(start);
+        c.strings = null;
+    }
+
     /**
      * write and read functions
      */
 
-    private static void writeObject(Parcel p, Object value) {
-        writeTypeValuePair(p, value);
+    static void writeObject(Parcel p, SedesContext c, Object value) {
+        writeTypeValuePair(p, c, value, null);
     }
 
-    private static Object readObject(Parcel p) throws ClassNotFoundException {
-        return readTypeValuePair(p);
+    static Object readObject(Parcel p, SedesContext c) throws ClassNotFoundException {
+        return readTypeValuePair(p, c, null);
     }
 
-    private static void writeTypeValuePair(Parcel p, Object value) {
+    /**
+     * @param site the inline cache of the calling site, null if it has none
+     */
+    private static void writeTypeValuePair(Parcel p, SedesContext c, Object value, DispatchSite site) {
+        c.checkCancelled();
+        if (c.attachments != null && value instanceof ByteBuffer) { // named by the abstract class, any buffer reads back
+            writeType(p, c, ByteBuffer.class);
+            p.writeInt(VALUE_PRESENT);
+            p.writeInt(c.attachments.add((ByteBuffer) value));
+            p.writeInt(((ByteBuffer) value).order() == ByteOrder.LITTLE_ENDIAN ? 1 : 0);
+            return;
+        }
         Class<?> valueClazz = getTypeClass(value);
-        writeType(p, valueClazz);
-        writeValueByType(p, valueClazz, value);
+        writeType(p, c, valueClazz);
+        writeValueByType(p, c, valueClazz, value, site);
+    }
+
+    static Object readTypeValuePair(Parcel p, SedesContext c) throws ClassNotFoundException {
+        return readTypeValuePair(p, c, null);
     }
 
-    private static Object readTypeValuePair(Parcel p) throws ClassNotFoundException {
-        return readValueByType(p, readType(p));
+    private static Object readTypeValuePair(Parcel p, SedesContext c, DispatchSite site) throws ClassNotFoundException {
+        c.checkCancelled();
+        return readValueByType(p, c, readType(p, c), site);
     }
 
-    private static void writeValueByType(Parcel p, Class<?> clazz, Object value) {
-        p.writeInt(value == null ? 0 : 1); // indicate value is null
+    @SuppressWarnings("unchecked")
+    private static void writeValueByType(Parcel p, SedesContext c, Class<?> clazz, Object value, DispatchSite site) {
         if (value == null) {
+            p.writeInt(VALUE_NULL);
+            return;
+        } else if (Singletons.isSingleton(value)) {
+            p.writeInt(VALUE_SINGLETON); // the class names the instance
             return;
         }
+        p.writeInt(VALUE_PRESENT);
 
-        if (clazz.isArray()) {  // write array value
-            writeArray(p, value);
-            return;
-        } else if (Collection.class.isAssignableFrom(clazz)) {
-            writeCollection(p, (Collection<?>) value);
+        if (value instanceof Enum) {
+            p.writeInt(-1 - ((Enum<?>) value).ordinal()); // negative, older payloads start with a field name here
             return;
-        } else if (Map.class.isAssignableFrom(clazz)) {
-            writeMap(p, (Map<?, ?>) value);
-            return;
-        } else {
-            SerializableHandler handler = getSerializableHandler(clazz);
-            if (handler != null) {
-                handler.write(p, value);
-                return;
-            }
         }
 
-        writeObjectInner(p, clazz, value);
+        Dispatch dispatch = dispatchOf(clazz, site);
+        switch (dispatch.kind) {
+            case DISPATCH_ARRAY:
+                writeArray(p, c, value);
+                break;
+            case DISPATCH_COLLECTION:
+                writeCollection(p, c, (Collection<?>) value);
+                break;
+            case DISPATCH_MAP:
+                writeMap(p, c, (Map<?, ?>) value);
+                break;
+            case DISPATCH_STRING:
+                if (c.strings != null) {
+                    p.writeInt(c.strings.idOf((String) value));
+                } else {
+                    dispatch.handler.write(p, value);
+                }
+                break;
+            case DISPATCH_HANDLER:
+                dispatch.handler.write(p, value);
+                break;
+            case DISPATCH_GENERATED:
+                if (c.valueWriter == null) {
+                    c.valueWriter = (parcel, v) -> writeTypeValuePair(parcel, c, v, null);
+                }
+                ((GeneratedSedes<Object>) dispatch.generated).write(p, value, c.valueWriter);
+                break;
+            case DISPATCH_PARCELABLE: // its own CREATOR knows its state better than reflection
+                p.writeParcelable((Parcelable) value, 0);
+                break;
+            default:
+                writeObjectInner(p, c, clazz, value);
+                break;
+        }
     }
 
-    private static Object readValueByType(Parcel p, String clazzName) throws ClassNotFoundException {
-        boolean isNull = p.readInt() == 0;
-        if (isNull) {
+    private static Object readValueByType(Parcel p, SedesContext c, String clazzName, DispatchSite site) throws ClassNotFoundException {
+        int presence = p.readInt();
+        if (presence == VALUE_NULL) {
             return null;
         }
+        return readPresentValue(p, c, c.classOf(clazzName), presence, site);
+    }
 
-        Class<?> clazz = findClassFromName(clazzName);
-        if (clazz.isArray()) {  // read array
-            return readArray(p, clazz);
-        } else if (Collection.class.isAssignableFrom(clazz)) {
-            return readCollection(p, clazz);
-        } else if (Map.class.isAssignableFrom(clazz)) {
-            return readMap(p, clazz);
-        } else {
-            SerializableHandler handler = getSerializableHandler(clazz);
-            if (handler != null) {
-                return handler.read(p);
+    /**
+     * read a value written without type tag, the declared type of its field is its class
+     */
+    private static Object readValueOfType(Parcel p, SedesContext c, Class<?> clazz, DispatchSite site) throws ClassNotFoundException {
+        int presence = p.readInt();
+        if (presence == VALUE_NULL) {
+            return null;
+        }
+        return readPresentValue(p, c, clazz, presence, site);
+    }
+
+    private static Object readPresentValue(Parcel p, SedesContext c, Class<?> clazz, int presence, DispatchSite site) throws ClassNotFoundException {
+        if (presence == VALUE_SINGLETON) {
+            Object singleton = Singletons.of(clazz);
+            if (singleton == null) {
+                throw new IllegalStateException("no singleton registered for " + clazz.getName());
             }
+            return singleton;
         }
 
-        return readObjectInner(p, clazz);
+        Dispatch dispatch = dispatchOf(clazz, site);
+        switch (dispatch.kind) {
+            case DISPATCH_ENUM:
+                return readEnum(p, c, clazz);
+            case DISPATCH_BUFFER:
+                ByteBuffer buffer = attachments(c).get(p.readInt());
+                return p.readInt() == 1 ? buffer.order(ByteOrder.LITTLE_ENDIAN) : buffer;
+            case DISPATCH_ARRAY:
+                return readArray(p, c, clazz);
+            case DISPATCH_COLLECTION:
+                return readCollection(p, c, clazz);
+            case DISPATCH_MAP:
+                return readMap(p, c, clazz);
+            case DISPATCH_STRING:
+                return c.strings != null ? c.strings.get(p.readInt()) : dispatch.handler.read(p);
+            case DISPATCH_HANDLER:
+                return dispatch.handler.read(p);
+            case DISPATCH_GENERATED:
+                if (c.valueReader == null) {
+                    c.valueReader = parcel -> readTypeValuePair(parcel, c, null);
+                }
+                return dispatch.generated.read(p, c.valueReader);
+            case DISPATCH_PARCELABLE:
+                return p.readParcelable(clazz.getClassLoader());
+            default:
+                return readObjectInner(p, c, clazz);
+        }
     }
 
-    private static void writeObjectInner(Parcel p, Class<?> clazz, Object object) {
-        Collection<Field> fields = Jock.allNonStaticFields(clazz).values();
-        for (Field field : fields) {
-            Object fieldValue = null;
-            try {
-                fieldValue = field.get(object);
-            } catch (IllegalAccessException e) {
-                e.printStackTrace();
-            }
+    /**
+     * write the id of the layout of the class and the fields by their declared types, see {@link ClassLayout}
+     */
+    private static void writeObjectInner(Parcel p, SedesContext c, Class<?> clazz, Object object) {
+        ClassLayout layout = ClassLayout.of(clazz);
+        Integer id = c.layoutIds.get(clazz);
+        if (id == null) {
+            id = c.writtenLayouts.size();
+            c.layoutIds.put(clazz, id);
+            c.writtenLayouts.add(layout);
+        }
+        p.writeInt(id);
 
-            p.writeString(field.getName()); // write object field name
-            writeTypeValuePair(p, fieldValue);
+        Field[] fields = layout.descriptor.fields;
+        try {
+            layout.block.write(p, object);
+            for (int index : layout.references) {
+                if (layout.encodings[index] == ClassLayout.TYPED) {
+                    writeValueByType(p, c, fields[index].getType(), fields[index].get(object), layout.sites[index]);
+                } else {
+                    writeTypeValuePair(p, c, fields[index].get(object), layout.sites[index]);
+                }
+            }
+        } catch (IllegalAccessException e) {
+            e.printStackTrace();
         }
     }
 
-    private static Object readObjectInner(Parcel p, Class<?> clazz) throws ClassNotFoundException {
+    private static Object readObjectInner(Parcel p, SedesContext c, Class<?> clazz) throws ClassNotFoundException {
+        if (c.layouts == null) {
+            return readTaggedObject(p, c, clazz);
+        }
+        ClassLayout.Mapping mapping = mappingOf(c, p.readInt());
+        if (mapping.clazz != clazz) {
+            throw new IllegalStateException("layout of " + mapping.clazz.getName() + " used for " + clazz.getName());
+        }
+
         Object object = InstancePool.newInstance(clazz);
-        Map<String, Field> fieldMap = Jock.allNonStaticFields(clazz);
-        for (int i = 0; i < fieldMap.size(); i++) {
-            String fieldName = p.readString();
-            Object fieldValue = readTypeValuePair(p);
+        Field[] fields = mapping.target.fields;
+        try {
+            if (mapping.identical) {
+                ClassLayout.of(clazz).block.read(p, object); // no boxing
+                for (int index : mapping.references) {
+                    fields[index].set(object, readReference(p, c, mapping, index));
+                }
+                return object;
+            }
+
+            Object[] values = PrimitiveBlock.readValues(p, mapping.encodings);
+            for (int index : mapping.references) {
+                values[index] = readReference(p, c, mapping, index);
+            }
+            for (int i = 0; i < values.length; i++) {
+                if (mapping.targets[i] >= 0) {
+                    setField(fields[mapping.targets[i]], object, values[i]);
+                }
+            }
+        } catch (IllegalAccessException e) {
+            e.printStackTrace();
+        }
+        return object;
+    }
 
-            Field field = fieldMap.get(fieldName);
-            if (field != null) {
+    private static Object readReference(Parcel p, SedesContext c, ClassLayout.Mapping mapping, int index) throws ClassNotFoundException {
+        if (mapping.encodings[index] == ClassLayout.TYPED) {
+            return readValueOfType(p, c, mapping.types[index], mapping.sites[index]);
+        }
+        return readTypeValuePair(p, c, mapping.sites[index]);
+    }
+
+    private static void setField(Field field, Object object, Object value) throws IllegalAccessException {
+        try {
+            field.set(object, value);
+        } catch (IllegalArgumentException e) {
+            // the declared type changed to one the value does not fit, like a removed field the value is dropped
+        }
+    }
+
+    /**
+     * the layout table: count, then class name, field count and name, declared type and encoding of each
+     * field. the reader decodes with the written encoding, the declared type may have changed since
+     */
+    private static void writeLayouts(Parcel p, SedesContext c) {
+        p.writeInt(c.writtenLayouts.size());
+        for (int i = 0; i < c.writtenLayouts.size(); i++) {
+            ClassDescriptor descriptor = c.writtenLayouts.get(i).descriptor;
+            writeText(p, c, descriptor.clazz.getName());
+            p.writeInt(descriptor.fields.length);
+            for (int f = 0; f < descriptor.fields.length; f++) {
+                writeText(p, c, descriptor.names[f]);
+                writeText(p, c, descriptor.fields[f].getType().getName());
+                p.writeInt(c.writtenLayouts.get(i).encodings[f]);
+            }
+        }
+    }
+
+    private static List<ClassLayout.Written> readLayouts(Parcel p, SedesContext c) {
+        int count = p.readInt();
+        List<ClassLayout.Written> layouts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String className = readText(p, c);
+            int fieldCount = p.readInt();
+            String[] names = new String[fieldCount];
+            String[] typeNames = new String[fieldCount];
+            int[] encodings = new int[fieldCount];
+            for (int f = 0; f < fieldCount; f++) {
+                names[f] = readText(p, c);
+                typeNames[f] = readText(p, c);
+                encodings[f] = p.readInt();
+                if (encodings[f] < 0 || encodings[f] > ClassLayout.POLYMORPHIC) {
+                    throw new IllegalArgumentException("unknown field encoding " + encodings[f] + " of " + className);
+                }
+            }
+            layouts.add(new ClassLayout.Written(className, names, typeNames, encodings));
+        }
+        return layouts;
+    }
+
+    private static ClassLayout.Mapping mappingOf(SedesContext c, int id) throws ClassNotFoundException {
+        if (id < 0 || id >= c.layouts.size()) {
+            throw new IllegalArgumentException("unknown layout " + id + " of " + c.layouts.size());
+        }
+        ClassLayout.Written written = c.layouts.get(id);
+        if (written.mapping == null) {
+            Class<?>[] types = new Class<?>[written.typeNames.length];
+            for (int i = 0; i < types.length; i++) {
+                types[i] = c.classOf(written.typeNames[i]);
+            }
+            written.mapping = new ClassLayout.Mapping(c.classOf(written.className), written.names, types, written.encodings);
+        }
+        return written.mapping;
+    }
+
+    /**
+     * objects of payloads of earlier versions, every field with its name and type
+     */
+    private static Object readTaggedObject(Parcel p, SedesContext c, Class<?> clazz) throws ClassNotFoundException {
+        Object object = InstancePool.newInstance(clazz);
+        ClassDescriptor descriptor = ClassDescriptor.of(clazz);
+        for (int i = 0; i < descriptor.fields.length; i++) {
+            String fieldName = readText(p, c);
+            Object fieldValue = readTypeValuePair(p, c);
+
+            // same layout on both sides in the common case, the index also tells shadowed fields apart
+            int index = descriptor.names[i].equals(fieldName) ? i : descriptor.indexOf(fieldName);
+            if (index >= 0) {
                 try {
-                    field.set(object, fieldValue);
+                    descriptor.fields[index].set(object, fieldValue);
                 } catch (IllegalAccessException e) {
                     e.printStackTrace();
                 }
@@ -291,87 +849,459 @@ public class Sedes {
         return object;
     }
 
-    private static void writeType(Parcel p, Class<?> type) {
-        p.writeString(type.getName());
+    private static void writeType(Parcel p, SedesContext c, Class<?> type) {
+        if (c.types != null) {
+            p.writeInt(c.types.idOf(type));
+            return;
+        }
+        writeText(p, c, type.getName());
     }
 
-    private static String readType(Parcel p) {
-        return p.readString();
+    static String readType(Parcel p, SedesContext c) {
+        if (c.types != null) {
+            return c.types.nameOf(p.readInt());
+        }
+        return readText(p, c);
     }
 
-    private static void writeArray(Parcel p, Object value) {
+    private static void writeText(Parcel p, SedesContext c, String text) {
+        if (c.strings != null) {
+            p.writeInt(c.strings.idOf(text));
+        } else {
+            p.writeString(text);
+        }
+    }
+
+    private static String readText(Parcel p, SedesContext c) {
+        return c.strings != null ? c.strings.get(p.readInt()) : p.readString();
+    }
+
+    private static void writeArray(Parcel p, SedesContext c, Object value) {
         int len = Array.getLength(value);
+        if (c.attachments != null && isAttached(value.getClass().getComponentType(), len)) {
+            p.writeInt(ATTACHED);
+            p.writeInt(c.attachments.add(encodeArray(value, len)));
+            return;
+        }
+        DispatchSite site = new DispatchSite();
+        if (isIndexed(len)) {
+            int endSlot = beginIndexed(p, len);
+            int[] offsets = new int[len];
+            for (int i = 0; i < len; i++) {
+                offsets[i] = p.dataPosition();
+                writeTypeValuePair(p, c, Array.get(value, i), site);
+            }
+            endIndexed(p, endSlot, offsets);
+            return;
+        }
+
         p.writeInt(len);
         for (int i = 0; i < len; i++) {
-            writeTypeValuePair(p, Array.get(value, i));
+            writeTypeValuePair(p, c, Array.get(value, i), site);
         }
     }
 
-    private static Object readArray(Parcel p, Class<?> clazz) throws ClassNotFoundException {
+    private static Object readArray(Parcel p, SedesContext c, Class<?> clazz) throws ClassNotFoundException {
         int len = p.readInt();
+        if (len == ATTACHED) {
+            return decodeArray(attachments(c).get(p.readInt()), clazz.getComponentType());
+        }
+        int endPosition = -1;
+        if (len == INDEXED) {
+            len = p.readInt();
+            endPosition = p.readInt();
+        }
 
         Object arr = Array.newInstance(clazz.getComponentType(), len);
+        DispatchSite site = new DispatchSite();
         for (int i = 0; i < len; i++) {
-            Array.set(arr, i, readTypeValuePair(p));
+            Array.set(arr, i, readTypeValuePair(p, c, site));
         }
+        skipIndex(p, endPosition);
         return arr;
     }
 
-    private static void writeMap(Parcel p, Map<?, ?> map) {
-        p.writeInt(map.size()); // write size
-        for (Map.Entry entry : map.entrySet()) {
-            writeTypeValuePair(p, entry.getKey());
-            writeTypeValuePair(p, entry.getValue());
+    private static void writeMap(Parcel p, SedesContext c, Map<?, ?> map) {
+        int size = map.size();
+        DispatchSite keySite = new DispatchSite();
+        DispatchSite valueSite = new DispatchSite();
+        if (isIndexed(size)) {
+            int endSlot = beginIndexed(p, size);
+            // hash in the high bits and offset in the low bits, so sorting orders by hash
+            long[] keys = new long[size];
+            int i = 0;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                keys[i++] = ((long) keyHash(entry.getKey()) << 32) | p.dataPosition();
+                writeTypeValuePair(p, c, entry.getKey(), keySite);
+                writeTypeValuePair(p, c, entry.getValue(), valueSite);
+            }
+            Arrays.sort(keys);
+            for (long key : keys) {
+                p.writeInt((int) (key >> 32));
+                p.writeInt((int) key);
+            }
+            patchEnd(p, endSlot);
+            return;
+        }
+
+        p.writeInt(size); // write size
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            writeTypeValuePair(p, c, entry.getKey(), keySite);
+            writeTypeValuePair(p, c, entry.getValue(), valueSite);
         }
     }
 
-    private static Object readMap(Parcel p, Class<?> mapClazz) throws ClassNotFoundException {
+    private static Object readMap(Parcel p, SedesContext c, Class<?> mapClazz) throws ClassNotFoundException {
         Map map = (Map) InstancePool.newInstance(mapClazz);
         int size = p.readInt();
+        int endPosition = -1;
+        if (size == INDEXED) {
+            size = p.readInt();
+            endPosition = p.readInt();
+        }
+        DispatchSite keySite = new DispatchSite();
+        DispatchSite valueSite = new DispatchSite();
         for (int i = 0; i < size; i++) {
             //noinspection unchecked
-            map.put(readTypeValuePair(p), readTypeValuePair(p));
+            map.put(readTypeValuePair(p, c, keySite), readTypeValuePair(p, c, valueSite));
         }
+        skipIndex(p, endPosition);
         return map;
     }
 
-    private static void writeCollection(Parcel p, Collection<?> set) {
-        p.writeInt(set.size());
+    private static void writeCollection(Parcel p, SedesContext c, Collection<?> set) {
+        int size = set.size();
+        DispatchSite site = new DispatchSite();
+        if (isIndexed(size)) {
+            int endSlot = beginIndexed(p, size);
+            int[] offsets = new int[size];
+            int i = 0;
+            for (Object item : set) {
+                offsets[i++] = p.dataPosition();
+                writeTypeValuePair(p, c, item, site);
+            }
+            endIndexed(p, endSlot, offsets);
+            return;
+        }
+
+        p.writeInt(size);
         for (Object item : set) {
-            writeTypeValuePair(p, item);
+            writeTypeValuePair(p, c, item, site);
         }
     }
 
-    private static Object readCollection(Parcel p, Class<?> setClazz) throws ClassNotFoundException {
+    private static Object readCollection(Parcel p, SedesContext c, Class<?> setClazz) throws ClassNotFoundException {
         int size = p.readInt();
+        int endPosition = -1;
+        if (size == INDEXED) {
+            size = p.readInt();
+            endPosition = p.readInt();
+        }
         Collection set = (Collection) InstancePool.newInstance(setClazz);
         if (set == null) {
             return null;
         }
 
+        DispatchSite site = new DispatchSite();
         for (int i = 0; i < size; i++) {
             //noinspection unchecked
-            set.add(readTypeValuePair(p));
+            set.add(readTypeValuePair(p, c, site));
         }
+        skipIndex(p, endPosition);
         return set;
     }
 
+    /**
+     * attachments
+     */
+
+    static boolean isAttached(Class<?> component, int length) {
+        return component.isPrimitive() && component != Boolean.TYPE && (long) length * primitiveBytes(component) >= attachmentThreshold;
+    }
+
+    private static int primitiveBytes(Class<?> type) {
+        if (type == Long.TYPE || type == Double.TYPE) {
+            return 8;
+        } else if (type == Integer.TYPE || type == Float.TYPE) {
+            return 4;
+        } else if (type == Character.TYPE || type == Short.TYPE) {
+            return 2;
+        }
+        return 1;
+    }
+
+    /**
+     * @return the array itself for bytes, a buffer in {@link Attachments#ORDER} for wider primitives
+     */
+    private static ByteBuffer encodeArray(Object array, int length) {
+        if (array instanceof byte[]) {
+            return ByteBuffer.wrap((byte[]) array);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length * primitiveBytes(array.getClass().getComponentType())).order(Attachments.ORDER);
+        if (array instanceof int[]) {
+            buffer.asIntBuffer().put((int[]) array);
+        } else if (array instanceof long[]) {
+            buffer.asLongBuffer().put((long[]) array);
+        } else if (array instanceof char[]) {
+            buffer.asCharBuffer().put((char[]) array);
+        } else if (array instanceof short[]) {
+            buffer.asShortBuffer().put((short[]) array);
+        } else if (array instanceof float[]) {
+            buffer.asFloatBuffer().put((float[]) array);
+        } else {
+            buffer.asDoubleBuffer().put((double[]) array);
+        }
+        return buffer;
+    }
+
+    private static Object decodeArray(ByteBuffer region, Class<?> component) {
+        region.order(Attachments.ORDER);
+        int length = region.remaining() / primitiveBytes(component);
+        if (component == Byte.TYPE) {
+            byte[] array = new byte[length];
+            region.get(array);
+            return array;
+        } else if (component == Integer.TYPE) {
+            int[] array = new int[length];
+            region.asIntBuffer().get(array);
+            return array;
+        } else if (component == Long.TYPE) {
+            long[] array = new long[length];
+            region.asLongBuffer().get(array);
+            return array;
+        } else if (component == Character.TYPE) {
+            char[] array = new char[length];
+            region.asCharBuffer().get(array);
+            return array;
+        } else if (component == Short.TYPE) {
+            short[] array = new short[length];
+            region.asShortBuffer().get(array);
+            return array;
+        } else if (component == Float.TYPE) {
+            float[] array = new float[length];
+            region.asFloatBuffer().get(array);
+            return array;
+        }
+        double[] array = new double[length];
+        region.asDoubleBuffer().get(array);
+        return array;
+    }
+
+    private static Attachments attachments(SedesContext c) {
+        if (c.attachments == null) {
+            throw new IllegalStateException("payload has attachments, deserialize it with them");
+        }
+        return c.attachments;
+    }
+
+    /**
+     * indexed containers
+     */
+
+    static boolean isIndexed(int size) {
+        int minSize = indexedMinSize;
+        return minSize > 0 && size >= minSize;
+    }
+
+    /**
+     * @return the position of the end position slot, patched by {@link #patchEnd}
+     */
+    private static int beginIndexed(Parcel p, int size) {
+        p.writeInt(INDEXED);
+        p.writeInt(size);
+        int endSlot = p.dataPosition();
+        p.writeInt(0);
+        return endSlot;
+    }
+
+    private static void endIndexed(Parcel p, int endSlot, int[] offsets) {
+        for (int offset : offsets) {
+            p.writeInt(offset);
+        }
+        patchEnd(p, endSlot);
+    }
+
+    private static void patchEnd(Parcel p, int endSlot) {
+        int end = p.dataPosition();
+        p.setDataPosition(endSlot);
+        p.writeInt(end);
+        p.setDataPosition(end);
+    }
+
+    private static void skipIndex(Parcel p, int endPosition) {
+        if (endPosition >= 0) {
+            p.setDataPosition(endPosition);
+        }
+    }
+
+    /**
+     * the hash of a key in the index of a map, only keys with a hash code that is the same in every process
+     * (strings, boxed primitives, enums by name) can be looked up
+     */
+    static int keyHash(Object key) {
+        if (key == null) {
+            return 0;
+        } else if (key instanceof Enum) {
+            return ((Enum<?>) key).name().hashCode();
+        }
+        return key.hashCode();
+    }
+
     /**
      * help functions
      */
 
-    private static Class<?> findClassFromName(String clazzName) throws ClassNotFoundException {
-        Class<?> clazz = primitiveTypes.get(clazzName);
+    static Class<?> findClassFromName(String clazzName) throws ClassNotFoundException {
+        WeakReference<Class<?>> cached = classesByName.get(clazzName);
+        Class<?> clazz = cached != null ? cached.get() : null;
         if (clazz == null) {
-            clazz = Class.forName(clazzName);
+            clazz = primitiveTypes.get(clazzName);
+            if (clazz == null) {
+                clazz = Class.forName(clazzName);
+            }
+            classesByName.put(clazzName, new WeakReference<Class<?>>(clazz));
         }
         return clazz;
     }
 
-    private static Class<?> getTypeClass(Object value) {
+    static Class<?> getTypeClass(Object value) {
+        if (value instanceof Enum) { // constants with a body are instances of an anonymous subclass
+            return ((Enum<?>) value).getDeclaringClass();
+        }
         return value == null ? NullValue.class : value.getClass();
     }
 
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object readEnum(Parcel p, SedesContext c, Class<?> clazz) throws ClassNotFoundException {
+        Class<?> enumType = clazz.isEnum() ? clazz : clazz.getSuperclass();
+        int ordinal = p.readInt();
+        if (ordinal < 0) {
+            return enumConstants(enumType)[-1 - ordinal];
+        }
+
+        // written before ordinals, each field of the constant by name, which names it
+        p.setDataPosition(p.dataPosition() - 4);
+        Object name = null;
+        for (int i = legacyFieldCount(clazz); i > 0; i--) {
+            String fieldName = p.readString();
+            Object fieldValue = readTypeValuePair(p, c);
+            if ("name".equals(fieldName)) {
+                name = fieldValue;
+            }
+        }
+        if (!(name instanceof String)) {
+            throw new IllegalStateException("no constant name written for " + clazz.getName());
+        }
+        return Enum.valueOf((Class<? extends Enum>) enumType, (String) name);
+    }
+
+    private static int legacyFieldCount(Class<?> clazz) {
+        Set<String> names = new HashSet<>();
+        for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    names.add(field.getName());
+                }
+            }
+        }
+        return names.size();
+    }
+
+    private static Object[] enumConstants(Class<?> clazz) {
+        Object[] constants = enumConstants.get(clazz);
+        if (constants == null) {
+            constants = enumConstants.putIfAbsent(clazz, clazz.getEnumConstants());
+        }
+        return constants;
+    }
+
+    static boolean hasHandler(Class<?> clazz) {
+        return dispatchOf(clazz).handler != null;
+    }
+
+    /**
+     * dispatch
+     */
+
+    /**
+     * a registry added after the first payload must replace the cached misses of its classes
+     */
+    private static void invalidateDispatches() {
+        dispatches.clear();
+        ClassLayout.clear(); // the inline caches of the fields go with them
+    }
+
+    private static Dispatch dispatchOf(Class<?> clazz) {
+        Dispatch dispatch = dispatches.get(clazz);
+        if (dispatch == null) {
+            dispatch = dispatches.putIfAbsent(clazz, new Dispatch(clazz));
+        }
+        return dispatch;
+    }
+
+    /**
+     * @param site the inline cache of the calling site, null if it has none
+     */
+    private static Dispatch dispatchOf(Class<?> clazz, DispatchSite site) {
+        if (site == null) {
+            return dispatchOf(clazz);
+        }
+        Dispatch dispatch = site.last;
+        if (dispatch == null || dispatch.clazz != clazz) {
+            dispatch = dispatchOf(clazz);
+            site.last = dispatch;
+        }
+        return dispatch;
+    }
+
+    /**
+     * the resolved kind of a class with its handler, in the order the kinds were checked value by value
+     */
+    private static final class Dispatch {
+        final Class<?> clazz;
+        final int kind;
+        final SerializableHandler handler;
+        final GeneratedSedes<?> generated;
+
+        Dispatch(Class<?> clazz) {
+            this.clazz = clazz;
+            handler = getSerializableHandler(clazz);
+            generated = Generated.sedes(clazz);
+            kind = kindOf(clazz, handler, generated);
+        }
+
+        private static int kindOf(Class<?> clazz, SerializableHandler handler, GeneratedSedes<?> generated) {
+            if (Enum.class.isAssignableFrom(clazz)) { // older payloads name the subclass of a constant with a body
+                return DISPATCH_ENUM;
+            } else if (clazz == ByteBuffer.class) { // only read, a buffer is written as its class without attachments
+                return DISPATCH_BUFFER;
+            } else if (clazz.isArray()) {
+                return DISPATCH_ARRAY;
+            } else if (Collection.class.isAssignableFrom(clazz)) {
+                return DISPATCH_COLLECTION;
+            } else if (Map.class.isAssignableFrom(clazz)) {
+                return DISPATCH_MAP;
+            } else if (clazz == String.class) {
+                return DISPATCH_STRING;
+            } else if (handler != null) {
+                return DISPATCH_HANDLER;
+            } else if (generated != null) {
+                return DISPATCH_GENERATED;
+            } else if (Parcelable.class.isAssignableFrom(clazz)) {
+                return DISPATCH_PARCELABLE;
+            }
+            return DISPATCH_OBJECT;
+        }
+    }
+
+    /**
+     * a monomorphic inline cache of a field or container, the dispatch of the last class seen there, so a
+     * site of one class resolves it with a single compare. a race only costs a lookup, a dispatch is immutable
+     */
+    static final class DispatchSite {
+        private Dispatch last;
+    }
+
     private static SerializableHandler getSerializableHandler(Class<?> clazz) {
         if (clazz == null) {
             return null;
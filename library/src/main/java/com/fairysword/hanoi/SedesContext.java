@@ -0,0 +1,59 @@
+package com.fairysword.hanoi;
+
+import com.fairysword.hanoi.generated.GeneratedSedes;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+
+/**
+ * State of a single {@link Sedes} serialization or deserialization
+ */
+final class SedesContext {
+
+    private final Future<?> task;
+    GeneratedSedes.ValueWriter valueWriter;
+    GeneratedSedes.ValueReader valueReader;
+    // types are written as indexes into this dictionary instead of names, in batches
+    final TypeDictionary types;
+    // strings are written as indexes into this table, when the stream has one
+    StringTable strings;
+    // classes resolved by a reader session, kept across its payloads
+    Map<String, Class<?>> classes;
+    // large arrays and buffers are moved here, when the caller passed attachments
+    Attachments attachments;
+    // writer: the layout id of each written class, and the layouts in id order
+    Map<Class<?>, Integer> layoutIds;
+    List<ClassLayout> writtenLayouts;
+    // reader: the layout table of the payload, null for payloads of earlier versions
+    List<ClassLayout.Written> layouts;
+
+    SedesContext(Future<?> task) {
+        this(task, null);
+    }
+
+    SedesContext(Future<?> task, TypeDictionary types) {
+        this.task = task;
+        this.types = types;
+    }
+
+    Class<?> classOf(String name) throws ClassNotFoundException {
+        if (classes == null) {
+            return Sedes.findClassFromName(name);
+        }
+        Class<?> clazz = classes.get(name);
+        if (clazz == null) {
+            clazz = Sedes.findClassFromName(name);
+            classes.put(name, clazz);
+        }
+        return clazz;
+    }
+
+    void checkCancelled() {
+        if (task != null && task.isCancelled()) {
+            throw new CancellationException("sedes cancelled");
+        }
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.fairysword.hanoi;
+
+import android.os.Parcel;
+
+import java.util.HashMap;
+
+/**
+ * A reusable {@link Sedes#deserialize} for one thread, the parcel and the classes resolved by name are
+ * kept between payloads instead of being looked up again for each one. the reader holds the classes it
+ * has read until recycled. not thread safe
+ */
+public final class SedesReader {
+
+    private final SedesContext context = new SedesContext(null);
+    private Parcel parcel = Parcel.obtain();
+
+    public SedesReader() {
+        context.classes = new HashMap<>();
+    }
+
+    /**
+     * @param bytes serializable bytes using {@link Parcel}
+     * @return the instance represented by the serializable bytes
+     */
+    public Object read(byte[] bytes) {
+        if (parcel == null) {
+            throw new IllegalStateException("reader already recycled");
+        }
+        return Sedes.deserializeWith(parcel, bytes, context);
+    }
+
+    /**
+     * release the parcel and the resolved classes, the reader can not be used any more
+     */
+    public void recycle() {
+        if (parcel != null) {
+            parcel.recycle();
+            parcel = null;
+            context.classes.clear();
+        }
+    }
+
+}
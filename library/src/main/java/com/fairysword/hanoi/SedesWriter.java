@@ -0,0 +1,38 @@
+package com.fairysword.hanoi;
+
+import android.os.Parcel;
+
+/**
+ * A reusable {@link Sedes#serialize} for one thread, the parcel, the string table and the other state of
+ * a serialization are kept and reset between payloads instead of being created for each one.
+ * not thread safe
+ */
+public final class SedesWriter {
+
+    private final SedesContext context = new SedesContext(null);
+    private Parcel parcel = Parcel.obtain();
+
+    /**
+     * @param original the source object
+     * @return serializable bytes using {@link Parcel}, the same as {@link Sedes#serialize} returns
+     */
+    public byte[] write(Object original) {
+        if (parcel == null) {
+            throw new IllegalStateException("writer already recycled");
+        }
+        parcel.setDataPosition(0);
+        parcel.setDataSize(0);
+        return Sedes.serializeWith(parcel, original, context);
+    }
+
+    /**
+     * release the parcel, the writer can not be used any more
+     */
+    public void recycle() {
+        if (parcel != null) {
+            parcel.recycle();
+            parcel = null;
+        }
+    }
+
+}
@@ -0,0 +1,157 @@
+package com.fairysword.hanoi;
+
+import android.os.Parcel;
+import android.os.ParcelFileDescriptor;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Hands a {@link Sedes} payload to another process through a shared file region, only its descriptor crosses
+ * the process boundary. the region holds a small header, the main stream and the {@link Attachments} of the
+ * payload, which the receiver reads as views of its read-only mapping without copying them
+ * <p>
+ * The region is created in the temp directory by default, the private cache directory of an android app. it
+ * is restricted to its owner before anything is written and unlinked as soon as its descriptor is open.
+ */
+public final class SharedPayload {
+
+    // read as bytes this is 'H', 'M', 'S', 0xFA in little endian order
+    private static final int MAGIC = 0xFA534D48;
+    private static final int HEADER_SIZE = 12;
+
+    private SharedPayload() {
+    }
+
+    /**
+     * @param dest     the parcel sent to the other process
+     * @param original the source object
+     * @throws IOException
+     */
+    public static void write(Parcel dest, Object original) throws IOException {
+        write(dest, original, defaultDirectory());
+    }
+
+    /**
+     * @param dest     the parcel sent to the other process
+     * @param original the source object
+     * @param dir      the directory of the region file, on memory backed or local storage. a directory other
+     *                 users can list, like /dev/shm, exposes the file to them until it is restricted
+     * @throws IOException if the file can not be written or restricted to its owner
+     */
+    public static void write(Parcel dest, Object original, File dir) throws IOException {
+        File file = File.createTempFile("sedes", ".shm", dir);
+        try {
+            restrictToOwner(file);
+            FileOutputStream out = new FileOutputStream(file);
+            try {
+                writeRegion(original, out.getChannel());
+            } finally {
+                out.close();
+            }
+
+            ParcelFileDescriptor descriptor = ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY);
+            try {
+                dest.writeFileDescriptor(descriptor.getFileDescriptor()); // dup'ed by the parcel
+            } finally {
+                descriptor.close();
+            }
+        } finally {
+            if (!file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * @param source the parcel written by {@link #write}
+     * @return the instance represented by the payload
+     * @throws IOException
+     */
+    public static Object read(Parcel source) throws IOException {
+        ParcelFileDescriptor descriptor = source.readFileDescriptor();
+        // closed through the descriptor only, closing the stream too would close the descriptor twice
+        FileInputStream in = new FileInputStream(descriptor.getFileDescriptor());
+        try {
+            FileChannel channel = in.getChannel();
+            return readRegion(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())); // outlives the descriptor
+        } finally {
+            descriptor.close();
+        }
+    }
+
+    /**
+     * @return the temp directory, the private cache directory of an android app
+     */
+    public static File defaultDirectory() {
+        return new File(System.getProperty("java.io.tmpdir"));
+    }
+
+    /**
+     * new files get the permissions of the umask, which may let other users read them
+     */
+    private static void restrictToOwner(File file) throws IOException {
+        if (!file.setReadable(false, false) || !file.setWritable(false, false) || !file.setExecutable(false, false)
+                || !file.setReadable(true, true) || !file.setWritable(true, true)) {
+            throw new IOException("can not restrict " + file + " to its owner");
+        }
+    }
+
+    /**
+     * write the header, the main stream and the attachments of the payload in one gathering pass
+     */
+    static void writeRegion(Object original, FileChannel channel) throws IOException {
+        Attachments attachments = new Attachments();
+        byte[] payload = Sedes.serialize(original, attachments);
+
+        int count = attachments.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + 4 * count).order(Attachments.ORDER);
+        header.putInt(MAGIC).putInt(payload.length).putInt(count);
+        ByteBuffer[] buffers = new ByteBuffer[count + 2];
+        for (int i = 0; i < count; i++) {
+            buffers[i + 2] = attachments.get(i);
+            header.putInt(buffers[i + 2].remaining());
+        }
+        header.flip();
+        buffers[0] = header;
+        buffers[1] = ByteBuffer.wrap(payload);
+
+        for (int i = 0; i < buffers.length; i++) {
+            while (buffers[i].hasRemaining()) {
+                channel.write(buffers[i]);
+            }
+        }
+    }
+
+    /**
+     * @param region the mapped region, only the main stream is copied out of it
+     */
+    static Object readRegion(ByteBuffer region) {
+        region.order(Attachments.ORDER);
+        if (region.remaining() < HEADER_SIZE || region.getInt() != MAGIC) {
+            throw new IllegalArgumentException("not a shared sedes payload");
+        }
+        int payloadLength = region.getInt();
+        int count = region.getInt();
+        int[] lengths = new int[count];
+        for (int i = 0; i < count; i++) {
+            lengths[i] = region.getInt();
+        }
+
+        byte[] payload = new byte[payloadLength]; // a parcel only unmarshalls arrays
+        region.get(payload);
+        Attachments attachments = new Attachments();
+        for (int i = 0; i < count; i++) {
+            int start = region.position();
+            region.limit(start + lengths[i]);
+            attachments.add(region);
+            region.limit(region.capacity()).position(start + lengths[i]);
+        }
+        return Sedes.deserialize(payload, attachments);
+    }
+
+}
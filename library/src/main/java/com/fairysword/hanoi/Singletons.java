@@ -0,0 +1,49 @@
+package com.fairysword.hanoi;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Canonical instances, at most one per class. {@link Jock} shares them by reference and {@link Sedes}
+ * writes them by class only, so they stay unique after copies and round trips
+ */
+final class Singletons {
+
+    // copied on write, reads are lock-free
+    private static volatile Map<Class<?>, Object> instances = new HashMap<>();
+
+    static {
+        register(Collections.EMPTY_LIST);
+        register(Collections.EMPTY_SET);
+        register(Collections.EMPTY_MAP);
+    }
+
+    private Singletons() {
+    }
+
+    static synchronized void register(Object instance) {
+        Object existing = instances.get(instance.getClass());
+        if (existing == instance) {
+            return;
+        } else if (existing != null) {
+            throw new IllegalArgumentException("another singleton of " + instance.getClass().getName() + " is registered");
+        }
+        Map<Class<?>, Object> copy = new HashMap<>(instances);
+        copy.put(instance.getClass(), instance);
+        instances = copy;
+    }
+
+    static boolean isSingleton(Object object) {
+        return instances.get(object.getClass()) == object;
+    }
+
+    static boolean hasSingleton(Class<?> clazz) {
+        return instances.containsKey(clazz);
+    }
+
+    static Object of(Class<?> clazz) {
+        return instances.get(clazz);
+    }
+
+}
@@ -0,0 +1,367 @@
+package com.fairysword.hanoi;
+
+import android.os.Parcelable;
+
+import com.fairysword.hanoi.generated.Generated;
+import com.fairysword.hanoi.utils.ClassCache;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Estimates of a single {@link Jock#deepSizeOf} or {@link Sedes#predictSerializedSize} call, walking the
+ * cached field metadata instead of copying or writing anything.
+ * <p>
+ * Containers larger than the sample size are measured on evenly spaced elements (or the first ones, when
+ * they have no index) and the rest is extrapolated. Heap sizes follow the ART layout: 8 byte object
+ * headers, 4 byte references, objects aligned to 8 bytes. Serialized sizes follow the raw {@link Sedes}
+ * payload before compression, with 4 byte aligned parcel writes and one layout table entry per class. The
+ * string table entries first seen in the second half of a sample are extrapolated like the sample itself.
+ */
+final class SizeEstimator {
+
+    static final int DEFAULT_SAMPLE_SIZE = 32;
+
+    private static final int OBJECT_HEADER = 8;
+    private static final int ARRAY_HEADER = 12;
+    private static final int REFERENCE = 4;
+    private static final int HASH_NODE = 24;
+    private static final int LINKED_HASH_NODE = 32;
+    private static final int LIST_NODE = 24;
+    private static final int PAYLOAD_HEADER = Sedes.PAYLOAD_HEADER_SIZE;
+
+    private static final ClassCache<Integer> shallowSizes = new ClassCache<>("shallow sizes");
+
+    // null when predicting a serialized size
+    private final Jock jock;
+    private final int sampleSize;
+    private final IdentityHashMap<Object, Object> visited = new IdentityHashMap<>();
+    // distinct strings of the string table, when enabled
+    private final Set<String> strings;
+    // bytes of the string table entries, including the ones extrapolated from samples
+    private long tableBytes;
+    // classes whose layout is in the layout table
+    private final Set<Class<?>> layouts = new HashSet<>();
+
+    private SizeEstimator(Jock jock, int sampleSize, boolean stringTable) {
+        if (sampleSize < 1) {
+            throw new IllegalArgumentException("sample size must be positive: " + sampleSize);
+        }
+        this.jock = jock;
+        this.sampleSize = sampleSize;
+        this.strings = stringTable ? new HashSet<String>() : null;
+    }
+
+    static long heapSizeOf(Jock jock, Object object, int sampleSize) {
+        return new SizeEstimator(jock, sampleSize, false).heap(object);
+    }
+
+    static long serializedSizeOf(Object object, int sampleSize, boolean stringTable) {
+        SizeEstimator estimator = new SizeEstimator(null, sampleSize, stringTable);
+        long size = PAYLOAD_HEADER + estimator.pair(object) + 4; // the layout count after the root
+        if (stringTable) {
+            size += 4 + estimator.tableBytes; // the string count
+        }
+        return size;
+    }
+
+    /**
+     * heap
+     */
+
+    private long heap(Object object) {
+        if (object == null || visited.put(object, object) != null || jock.isShared(object) && !isImmutableValue(object)) {
+            return 0; // enums, singletons and ignored classes are not retained by the graph
+        }
+
+        Class<?> clazz = object.getClass();
+        if (clazz == String.class) {
+            return align(OBJECT_HEADER + 8 + 2L * ((String) object).length());
+        } else if (clazz.isArray()) {
+            int length = Array.getLength(object);
+            Class<?> component = clazz.getComponentType();
+            long size = align(ARRAY_HEADER + (long) length * (component.isPrimitive() ? primitiveSize(component) : REFERENCE));
+            return component.isPrimitive() ? size : size + sampledElements(object, length);
+        } else if (object instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) object;
+            return shallowSize(clazz) + containerOverhead(map, map.size()) + sampledEntries(map);
+        } else if (object instanceof Collection) {
+            Collection<?> collection = (Collection<?>) object;
+            return shallowSize(clazz) + containerOverhead(collection, collection.size()) + sampledElements(collection);
+        }
+
+        long size = shallowSize(clazz);
+        ClassDescriptor descriptor = ClassDescriptor.of(clazz);
+        for (int i = 0; i < descriptor.fields.length; i++) {
+            if (descriptor.kinds[i] >= ClassDescriptor.KIND_IMMUTABLE) {
+                size += heap(get(descriptor.fields[i], object));
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return true for strings and boxed values, shared by copies but still retained by the graph
+     */
+    private static boolean isImmutableValue(Object object) {
+        return ClassDescriptor.JDK_IMMUTABLE_TYPES.contains(object.getClass());
+    }
+
+    /**
+     * @return the bytes of the nodes and tables of a jdk container, beyond its own fields
+     */
+    private static long containerOverhead(Object container, int size) {
+        if (container instanceof LinkedList || container instanceof ConcurrentLinkedQueue) {
+            return (long) size * LIST_NODE;
+        } else if (container instanceof Map || container instanceof Set) {
+            boolean linked = container instanceof LinkedHashMap || container instanceof LinkedHashSet;
+            long table = align(ARRAY_HEADER + (long) REFERENCE * Integer.highestOneBit(Math.max(size * 4 / 3, 1) * 2));
+            long backingMap = container instanceof Map ? 0 : align(OBJECT_HEADER + 6 * REFERENCE);
+            return backingMap + table + (long) size * (linked ? LINKED_HASH_NODE : HASH_NODE);
+        }
+        return align(ARRAY_HEADER + (long) REFERENCE * size); // array backed
+    }
+
+    private static int shallowSize(Class<?> clazz) {
+        Integer size = shallowSizes.get(clazz);
+        if (size == null) {
+            ClassDescriptor descriptor = ClassDescriptor.of(clazz);
+            long bytes = OBJECT_HEADER;
+            for (int i = 0; i < descriptor.fields.length; i++) {
+                Class<?> type = descriptor.fields[i].getType();
+                bytes += type.isPrimitive() ? primitiveSize(type) : REFERENCE;
+            }
+            size = shallowSizes.putIfAbsent(clazz, (int) align(bytes));
+        }
+        return size;
+    }
+
+    private static int primitiveSize(Class<?> type) {
+        if (type == Long.TYPE || type == Double.TYPE) {
+            return 8;
+        } else if (type == Integer.TYPE || type == Float.TYPE) {
+            return 4;
+        } else if (type == Character.TYPE || type == Short.TYPE) {
+            return 2;
+        }
+        return 1;
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    /**
+     * serialized
+     */
+
+    private long pair(Object value) {
+        Class<?> clazz = Sedes.getTypeClass(value);
+        return text(clazz.getName()) + value(clazz, value);
+    }
+
+    private long value(Class<?> clazz, Object value) {
+        if (value == null || Singletons.isSingleton(value)) {
+            return 4;
+        }
+        if (value instanceof Enum) {
+            return 8;
+        }
+
+        long size = 4;
+        if (clazz.isArray()) {
+            int length = Array.getLength(value);
+            return size + containerHeader(length, 4) + sampledElements(value, length);
+        } else if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            return size + containerHeader(collection.size(), 4) + sampledElements(collection);
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            return size + containerHeader(map.size(), 8) + sampledEntries(map);
+        } else if (clazz == String.class) {
+            return size + (strings != null ? text((String) value) : string((String) value));
+        } else if (value instanceof CharSequence) {
+            return size + 4 + string(value.toString());
+        } else if (value instanceof Long || value instanceof Double) {
+            return size + 8;
+        } else if (Sedes.hasHandler(clazz)) {
+            return size + 4;
+        } else if (Generated.sedes(clazz) != null) {
+            ClassDescriptor descriptor = ClassDescriptor.of(clazz);
+            for (int i = 0; i < descriptor.fields.length; i++) {
+                int kind = descriptor.kinds[i];
+                size += kind < ClassDescriptor.KIND_IMMUTABLE ? (kind == ClassDescriptor.KIND_LONG || kind == ClassDescriptor.KIND_DOUBLE ? 8 : 4)
+                        : pair(get(descriptor.fields[i], value));
+            }
+            return size;
+        } else if (value instanceof Parcelable) {
+            return size + 4 + shallowSize(clazz); // its own layout is unknown, its fields are a fair guess
+        }
+
+        ClassLayout layout = ClassLayout.of(clazz);
+        ClassDescriptor descriptor = layout.descriptor;
+        if (layouts.add(clazz)) {
+            size += text(clazz.getName()) + 4;
+            for (int i = 0; i < descriptor.fields.length; i++) {
+                size += text(descriptor.names[i]) + text(descriptor.fields[i].getType().getName()) + 4;
+            }
+        }
+        size += 4 + layout.block.byteCount; // the layout id and the primitives
+        for (int index : layout.references) {
+            Field field = descriptor.fields[index];
+            if (layout.encodings[index] == ClassLayout.TYPED) {
+                size += value(field.getType(), get(field, value));
+            } else {
+                size += pair(get(field, value));
+            }
+        }
+        return size;
+    }
+
+    private static long containerHeader(int size, int indexEntry) {
+        return Sedes.isIndexed(size) ? 12 + (long) indexEntry * size : 4;
+    }
+
+    /**
+     * a class name, field name or string value, an id when the string table is enabled
+     */
+    private long text(String text) {
+        if (strings != null) {
+            if (strings.add(text)) {
+                tableBytes += 12 + parcelBytes(latin1(text) ? text.length() : utf8Length(text));
+            }
+            return 4;
+        }
+        return string(text);
+    }
+
+    /**
+     * @return the bytes of {@link android.os.Parcel#writeString}: length, UTF-16 chars and terminator
+     */
+    private static long string(String string) {
+        return 4 + parcelBytes(2L * (string.length() + 1));
+    }
+
+    private static long parcelBytes(long bytes) {
+        return (bytes + 3) & ~3L;
+    }
+
+    private static boolean latin1(String string) {
+        for (int i = 0; i < string.length(); i++) {
+            if (string.charAt(i) > 0xff) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long utf8Length(String string) {
+        long length = 0;
+        for (int i = 0; i < string.length(); i++) {
+            char ch = string.charAt(i);
+            if (Character.isHighSurrogate(ch) && i + 1 < string.length() && Character.isLowSurrogate(string.charAt(i + 1))) {
+                length += 4; // a supplementary code point, written as one 4 byte sequence
+                i++;
+            } else {
+                length += ch < 0x80 ? 1 : ch < 0x800 ? 2 : 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * sampling
+     */
+
+    private long measure(Object element) {
+        return jock != null ? heap(element) : pair(element);
+    }
+
+    private long sampledElements(Object array, int length) {
+        if (length <= sampleSize) {
+            long size = 0;
+            for (int i = 0; i < length; i++) {
+                size += measure(Array.get(array, i));
+            }
+            return size;
+        }
+        long table = 0;
+        long sampled = 0;
+        for (int i = 0; i < sampleSize; i++) {
+            table = i == sampleSize / 2 ? tableBytes : table;
+            sampled += measure(Array.get(array, (int) ((long) i * length / sampleSize)));
+        }
+        return extrapolate(sampled, table, sampleSize, length);
+    }
+
+    private long sampledElements(Collection<?> collection) {
+        int size = collection.size();
+        long table = 0;
+        long sampled = 0;
+        if (size > sampleSize && collection instanceof List && collection instanceof RandomAccess) {
+            List<?> list = (List<?>) collection;
+            for (int i = 0; i < sampleSize; i++) {
+                table = i == sampleSize / 2 ? tableBytes : table;
+                sampled += measure(list.get((int) ((long) i * size / sampleSize)));
+            }
+            return extrapolate(sampled, table, sampleSize, size);
+        }
+
+        int count = 0;
+        for (Iterator<?> it = collection.iterator(); it.hasNext() && count < sampleSize; count++) {
+            table = count == sampleSize / 2 ? tableBytes : table;
+            sampled += measure(it.next());
+        }
+        return extrapolate(sampled, table, count, size);
+    }
+
+    private long sampledEntries(Map<?, ?> map) {
+        int size = map.size();
+        long table = 0;
+        long sampled = 0;
+        int count = 0;
+        for (Iterator<? extends Map.Entry<?, ?>> it = map.entrySet().iterator(); it.hasNext() && count < sampleSize; count++) {
+            table = count == sampleSize / 2 ? tableBytes : table;
+            Map.Entry<?, ?> entry = it.next();
+            sampled += measure(entry.getKey()) + measure(entry.getValue());
+        }
+        return extrapolate(sampled, table, count, size);
+    }
+
+    /**
+     * the string table entries added by the second half of the sample are extrapolated too, the first
+     * half also adds the class and field names and the few values shared by all elements
+     *
+     * @param tableHalf the string table bytes before the second half of the sample
+     * @return the bytes of all elements, from the bytes of the first count ones
+     */
+    private long extrapolate(long sampled, long tableHalf, int count, int size) {
+        if (count >= size || count == 0) {
+            return sampled;
+        }
+        tableBytes += (tableBytes - tableHalf) * (size - count) / Math.max(count - sampleSize / 2, 1);
+        return sampled * size / count;
+    }
+
+    private static Object get(Field field, Object object) {
+        try {
+            return field.get(object);
+        } catch (IllegalAccessException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,179 @@
+package com.fairysword.hanoi;
+
+import android.os.Parcel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Distinct strings of a stream, values, field names and class names refer to a string by its index.
+ * each string is stored once, in Latin-1 if all its chars fit, else in UTF-8, and is decoded to a single
+ * instance shared by every reference
+ */
+final class StringTable {
+
+    static final int NULL_ID = -1;
+
+    private static final int LATIN_1 = 0;
+    private static final int UTF_8 = 1;
+
+    // larger buffers are not kept, a single huge string must not pin memory for the thread
+    private static final int MAX_SCRATCH_SIZE = 64 * 1024;
+    private static final ThreadLocal<byte[]> byteScratch = new ThreadLocal<>();
+    private static final ThreadLocal<char[]> charScratch = new ThreadLocal<>();
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+
+    int idOf(String string) {
+        if (string == null) {
+            return NULL_ID;
+        }
+        Integer id = ids.get(string);
+        if (id == null) {
+            id = strings.size();
+            ids.put(string, id);
+            strings.add(string);
+        }
+        return id;
+    }
+
+    String get(int id) {
+        if (id == NULL_ID) {
+            return null;
+        }
+        if (id < 0 || id >= strings.size()) {
+            throw new IllegalArgumentException("unknown string id " + id + " of " + strings.size() + " strings");
+        }
+        return strings.get(id);
+    }
+
+    int size() {
+        return strings.size();
+    }
+
+    void clear() {
+        ids.clear();
+        strings.clear();
+    }
+
+    void writeTo(Parcel p) {
+        p.writeInt(strings.size());
+        for (int i = 0; i < strings.size(); i++) {
+            encode(p, strings.get(i));
+        }
+    }
+
+    static StringTable readFrom(Parcel p) {
+        StringTable table = new StringTable();
+        int size = p.readInt();
+        for (int i = 0; i < size; i++) {
+            table.strings.add(decode(p));
+        }
+        return table;
+    }
+
+    /**
+     * encode through a scratch buffer of the thread, nothing is allocated once the buffer is large enough
+     */
+    private static void encode(Parcel p, String string) {
+        int length = string.length();
+        boolean latin1 = true;
+        for (int i = 0; i < length; i++) {
+            if (string.charAt(i) > 0xff) {
+                latin1 = false;
+                break;
+            }
+        }
+
+        byte[] bytes = scratchBytes(latin1 ? length : length * 3);
+        int n = 0;
+        if (latin1) {
+            for (int i = 0; i < length; i++) {
+                bytes[n++] = (byte) string.charAt(i);
+            }
+        } else {
+            for (int i = 0; i < length; i++) {
+                char ch = string.charAt(i);
+                if (ch < 0x80) {
+                    bytes[n++] = (byte) ch;
+                } else if (ch < 0x800) {
+                    bytes[n++] = (byte) (0xc0 | (ch >> 6));
+                    bytes[n++] = (byte) (0x80 | (ch & 0x3f));
+                } else if (Character.isHighSurrogate(ch) && i + 1 < length && Character.isLowSurrogate(string.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(ch, string.charAt(++i));
+                    bytes[n++] = (byte) (0xf0 | (cp >> 18));
+                    bytes[n++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                    bytes[n++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                    bytes[n++] = (byte) (0x80 | (cp & 0x3f));
+                } else { // lone surrogates are kept as is, like modified UTF-8
+                    bytes[n++] = (byte) (0xe0 | (ch >> 12));
+                    bytes[n++] = (byte) (0x80 | ((ch >> 6) & 0x3f));
+                    bytes[n++] = (byte) (0x80 | (ch & 0x3f));
+                }
+            }
+        }
+        p.writeInt(latin1 ? LATIN_1 : UTF_8);
+        p.writeInt(length);
+        p.writeByteArray(bytes, 0, n);
+    }
+
+    private static String decode(Parcel p) {
+        int encoding = p.readInt();
+        int length = p.readInt();
+        byte[] bytes = p.createByteArray();
+        char[] chars = scratchChars(length);
+        if (encoding == LATIN_1) {
+            for (int i = 0; i < length; i++) {
+                chars[i] = (char) (bytes[i] & 0xff);
+            }
+            return new String(chars, 0, length);
+        }
+
+        int n = 0;
+        for (int i = 0; i < bytes.length; ) {
+            int b = bytes[i] & 0xff;
+            if (b < 0x80) {
+                chars[n++] = (char) b;
+                i++;
+            } else if (b < 0xe0) {
+                chars[n++] = (char) (((b & 0x1f) << 6) | (bytes[i + 1] & 0x3f));
+                i += 2;
+            } else if (b < 0xf0) {
+                chars[n++] = (char) (((b & 0x0f) << 12) | ((bytes[i + 1] & 0x3f) << 6) | (bytes[i + 2] & 0x3f));
+                i += 3;
+            } else {
+                int cp = ((b & 0x07) << 18) | ((bytes[i + 1] & 0x3f) << 12) | ((bytes[i + 2] & 0x3f) << 6) | (bytes[i + 3] & 0x3f);
+                chars[n++] = (char) (0xd800 + ((cp - 0x10000) >>> 10));
+                chars[n++] = (char) (0xdc00 + (cp & 0x3ff));
+                i += 4;
+            }
+        }
+        return new String(chars, 0, n);
+    }
+
+    private static byte[] scratchBytes(int size) {
+        byte[] bytes = byteScratch.get();
+        if (bytes == null || bytes.length < size) {
+            bytes = new byte[Math.max(size, 256)];
+            if (size <= MAX_SCRATCH_SIZE) {
+                byteScratch.set(bytes);
+            }
+        }
+        return bytes;
+    }
+
+    private static char[] scratchChars(int size) {
+        char[] chars = charScratch.get();
+        if (chars == null || chars.length < size) {
+            chars = new char[Math.max(size, 256)];
+            if (size <= MAX_SCRATCH_SIZE) {
+                charScratch.set(chars);
+            }
+        }
+        return chars;
+    }
+
+}
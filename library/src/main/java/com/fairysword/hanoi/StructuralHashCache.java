@@ -0,0 +1,51 @@
+package com.fairysword.hanoi;
+
+import java.util.IdentityHashMap;
+
+/**
+ * Structural hashes of large subtrees computed by {@link Jock#deepHash(Object, StructuralHashCache)}, keyed
+ * by identity. a cached hash is only valid while its subtree is not mutated, which always holds for
+ * versions made by {@link Jock#copyVersion}. not thread safe
+ */
+public class StructuralHashCache {
+
+    public static final int DEFAULT_MIN_SUBTREE_SIZE = 64;
+
+    private final IdentityHashMap<Object, Integer> hashes = new IdentityHashMap<>();
+    private final int minSubtreeSize;
+
+    public StructuralHashCache() {
+        this(DEFAULT_MIN_SUBTREE_SIZE);
+    }
+
+    /**
+     * @param minSubtreeSize only subtrees of at least this many objects are cached
+     */
+    public StructuralHashCache(int minSubtreeSize) {
+        this.minSubtreeSize = minSubtreeSize;
+    }
+
+    /**
+     * forget the hash of an object after mutating it, the hashes of its ancestors must be invalidated too
+     *
+     * @param object the mutated object
+     */
+    public void invalidate(Object object) {
+        hashes.remove(object);
+    }
+
+    public void clear() {
+        hashes.clear();
+    }
+
+    Integer get(Object object) {
+        return hashes.get(object);
+    }
+
+    void put(Object object, int hash, int subtreeSize) {
+        if (subtreeSize >= minSubtreeSize) {
+            hashes.put(object, hash);
+        }
+    }
+
+}
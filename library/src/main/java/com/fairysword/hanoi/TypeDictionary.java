@@ -0,0 +1,55 @@
+package com.fairysword.hanoi;
+
+import android.os.Parcel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class names shared by all records of a batch, each record refers to a type by its index
+ */
+final class TypeDictionary {
+
+    private final Map<Class<?>, Integer> ids = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+
+    int idOf(Class<?> type) {
+        Integer id = ids.get(type);
+        if (id == null) {
+            id = names.size();
+            ids.put(type, id);
+            names.add(type.getName());
+        }
+        return id;
+    }
+
+    String nameOf(int id) {
+        if (id < 0 || id >= names.size()) {
+            throw new IllegalArgumentException("unknown type id " + id + " of " + names.size() + " types");
+        }
+        return names.get(id);
+    }
+
+    int size() {
+        return names.size();
+    }
+
+    void writeTo(Parcel p) {
+        p.writeInt(names.size());
+        for (int i = 0; i < names.size(); i++) {
+            p.writeString(names.get(i));
+        }
+    }
+
+    static TypeDictionary readFrom(Parcel p) {
+        TypeDictionary dictionary = new TypeDictionary();
+        int size = p.readInt();
+        for (int i = 0; i < size; i++) {
+            dictionary.names.add(p.readString());
+        }
+        return dictionary;
+    }
+
+}
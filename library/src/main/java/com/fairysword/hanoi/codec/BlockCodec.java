@@ -0,0 +1,39 @@
+package com.fairysword.hanoi.codec;
+
+import java.io.IOException;
+
+/**
+ * A block compression codec used by {@link CompressedFrames}
+ */
+public interface BlockCodec {
+    /**
+     * @return the id written into frames, must be unique among registered codecs
+     */
+    int id();
+
+    /**
+     * compress a block
+     *
+     * @param src         the source bytes
+     * @param srcOffset   the offset of the block in src
+     * @param srcLength   the length of the block
+     * @param dst         the destination bytes
+     * @param dstOffset   the offset to write at in dst
+     * @param dstCapacity the max bytes to write
+     * @return the compressed length, or -1 if the compressed block does not fit in dstCapacity
+     */
+    int compress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOffset, int dstCapacity);
+
+    /**
+     * decompress a block
+     *
+     * @param src       the compressed bytes
+     * @param srcOffset the offset of the block in src
+     * @param srcLength the compressed length of the block
+     * @param dst       the destination bytes
+     * @param dstOffset the offset to write at in dst
+     * @param rawLength the exact decompressed length of the block
+     * @throws IOException if the block is corrupted
+     */
+    void decompress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOffset, int rawLength) throws IOException;
+}
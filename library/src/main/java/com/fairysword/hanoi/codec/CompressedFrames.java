@@ -0,0 +1,161 @@
+package com.fairysword.hanoi.codec;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Block based framing of compressed payloads:
+ * <pre>
+ * magic(4) codecId(4) rawLength(4) blockSize(4)
+ * repeated: blockRawLength(4) blockStoredLength(4) bytes(blockStoredLength)
+ * </pre>
+ * a negative blockStoredLength means the block is stored uncompressed, it did not shrink.
+ * all ints are big endian
+ */
+public final class CompressedFrames {
+
+    /**
+     * read as a little endian int this differs from the payload magic of Sedes, and it is negative and not -1,
+     * so it is not the string length that starts payloads written before that magic either
+     */
+    private static final byte[] MAGIC = {'H', 'N', 'Z', (byte) 0xFA};
+    private static final int HEADER_SIZE = 16;
+    private static final int BLOCK_HEADER_SIZE = 8;
+    /**
+     * deflate never inflates a byte to more than 1032, a frame claiming more raw bytes is corrupted
+     */
+    private static final int MAX_RATIO = 1032;
+
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+    private static final Map<Integer, BlockCodec> codecs = new ConcurrentHashMap<>();
+
+    static {
+        register(new DeflateCodec());
+    }
+
+    private CompressedFrames() {
+    }
+
+    /**
+     * register a codec so frames written with it can be decoded
+     *
+     * @param codec the codec
+     */
+    public static void register(BlockCodec codec) {
+        codecs.put(codec.id(), codec);
+    }
+
+    /**
+     * @param bytes the payload
+     * @return true if the payload is a compressed frame
+     */
+    public static boolean isCompressed(byte[] bytes) {
+        if (bytes == null || bytes.length < HEADER_SIZE) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (bytes[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param raw       the raw payload
+     * @param codec     the codec
+     * @param blockSize the raw size of each block
+     * @return the compressed frame
+     */
+    public static byte[] compress(byte[] raw, BlockCodec codec, int blockSize) {
+        int blocks = (raw.length + blockSize - 1) / blockSize;
+        byte[] out = new byte[HEADER_SIZE + blocks * BLOCK_HEADER_SIZE + raw.length];
+        System.arraycopy(MAGIC, 0, out, 0, MAGIC.length);
+        writeInt(out, 4, codec.id());
+        writeInt(out, 8, raw.length);
+        writeInt(out, 12, blockSize);
+
+        int position = HEADER_SIZE;
+        for (int offset = 0; offset < raw.length; offset += blockSize) {
+            int rawLength = Math.min(blockSize, raw.length - offset);
+            int dataOffset = position + BLOCK_HEADER_SIZE;
+            // only keep the compressed block if it is smaller than the raw one
+            int storedLength = codec.compress(raw, offset, rawLength, out, dataOffset, rawLength - 1);
+            if (storedLength < 0) {
+                System.arraycopy(raw, offset, out, dataOffset, rawLength);
+            }
+            writeInt(out, position, rawLength);
+            writeInt(out, position + 4, storedLength < 0 ? -rawLength : storedLength);
+            position = dataOffset + (storedLength < 0 ? rawLength : storedLength);
+        }
+        return position == out.length ? out : Arrays.copyOf(out, position);
+    }
+
+    /**
+     * @param rawLength the length of the raw payload
+     * @param blockSize the raw size of each block
+     * @return the largest frame {@link #compress} can return, when no block shrinks
+     */
+    public static long maxFrameSize(long rawLength, int blockSize) {
+        return HEADER_SIZE + (rawLength + blockSize - 1) / blockSize * BLOCK_HEADER_SIZE + rawLength;
+    }
+
+    /**
+     * @param frame the compressed frame
+     * @return the raw payload
+     * @throws IOException if the frame is corrupted or its codec is not registered
+     */
+    public static byte[] decompress(byte[] frame) throws IOException {
+        if (!isCompressed(frame)) {
+            throw new IOException("not a compressed frame");
+        }
+        BlockCodec codec = codecs.get(readInt(frame, 4));
+        if (codec == null) {
+            throw new IOException("unknown codec " + readInt(frame, 4));
+        }
+
+        int length = readInt(frame, 8);
+        if (length < 0 || length > (long) (frame.length - HEADER_SIZE) * MAX_RATIO) {
+            throw new IOException("corrupted raw length " + length + " of a " + frame.length + " byte frame");
+        }
+        byte[] raw = new byte[length];
+        int position = HEADER_SIZE;
+        int offset = 0;
+        while (offset < raw.length) {
+            if (position + BLOCK_HEADER_SIZE > frame.length) {
+                throw new IOException("truncated frame");
+            }
+            int rawLength = readInt(frame, position);
+            int storedLength = readInt(frame, position + 4);
+            int dataOffset = position + BLOCK_HEADER_SIZE;
+            int dataLength = storedLength < 0 ? -storedLength : storedLength;
+            if (rawLength <= 0 || offset + rawLength > raw.length || dataOffset + dataLength > frame.length) {
+                throw new IOException("corrupted block at " + position);
+            }
+            if (storedLength < 0) {
+                System.arraycopy(frame, dataOffset, raw, offset, rawLength);
+            } else {
+                codec.decompress(frame, dataOffset, storedLength, raw, offset, rawLength);
+            }
+            offset += rawLength;
+            position = dataOffset + dataLength;
+        }
+        return raw;
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xff) << 24 | (bytes[offset + 1] & 0xff) << 16
+                | (bytes[offset + 2] & 0xff) << 8 | (bytes[offset + 3] & 0xff);
+    }
+
+}
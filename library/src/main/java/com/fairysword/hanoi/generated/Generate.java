@@ -0,0 +1,24 @@
+package com.fairysword.hanoi.generated;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generate a {@link GeneratedCopier} and a {@link GeneratedSedes} for the class at compile time, Jock and
+ * Sedes prefer them to reflection. needs the hanoi processor on the annotation processor path
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface Generate {
+    /**
+     * @return generate the copier used by {@link com.fairysword.hanoi.Jock}
+     */
+    boolean copier() default true;
+
+    /**
+     * @return generate the reader / writer used by {@link com.fairysword.hanoi.Sedes}
+     */
+    boolean sedes() default true;
+}
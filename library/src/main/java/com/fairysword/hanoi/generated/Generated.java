@@ -0,0 +1,91 @@
+package com.fairysword.hanoi.generated;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Lookup of generated code. the registry of the application module is loaded by its fixed name, the
+ * registries of library modules are added with {@link #register}, which may happen after the first copy
+ */
+public final class Generated {
+
+    /**
+     * the registry name used by the processor unless the {@code hanoi.registry} option is set
+     */
+    public static final String DEFAULT_REGISTRY = "com.fairysword.hanoi.generated.HanoiGeneratedRegistry";
+
+    private static final Map<Class<?>, GeneratedCopier<?>> copiers = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, GeneratedSedes<?>> sedes = new ConcurrentHashMap<>();
+    private static final List<Runnable> registerListeners = new CopyOnWriteArrayList<>();
+
+    static {
+        try {
+            register((GeneratedRegistry) Class.forName(DEFAULT_REGISTRY).newInstance());
+        } catch (ClassNotFoundException ignored) {
+            // no generated code in the application module
+        } catch (InstantiationException | IllegalAccessException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private Generated() {
+    }
+
+    /**
+     * @param registry a registry written by the processor
+     */
+    public static void register(GeneratedRegistry registry) {
+        registry.register(copiers, sedes);
+        for (Runnable listener : registerListeners) {
+            listener.run();
+        }
+    }
+
+    /**
+     * run the listener after every {@link #register}, so caches of earlier lookups can be dropped
+     *
+     * @param listener the listener
+     */
+    public static void addRegisterListener(Runnable listener) {
+        registerListeners.add(listener);
+    }
+
+    /**
+     * used by generated code for the fields it can not access directly
+     *
+     * @param clazz the class declaring the field
+     * @param name  the field name
+     * @return the accessible field
+     */
+    public static Field field(Class<?> clazz, String name) {
+        try {
+            Field field = clazz.getDeclaredField(name);
+            field.setAccessible(true);
+            return field;
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException("generated code is stale, no field " + name + " in " + clazz.getName());
+        }
+    }
+
+    /**
+     * @param clazz the class
+     * @return the generated copier of the class, or null
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> GeneratedCopier<T> copier(Class<T> clazz) {
+        return copiers.isEmpty() ? null : (GeneratedCopier<T>) copiers.get(clazz);
+    }
+
+    /**
+     * @param clazz the class
+     * @return the generated reader / writer of the class, or null
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> GeneratedSedes<T> sedes(Class<T> clazz) {
+        return sedes.isEmpty() ? null : (GeneratedSedes<T>) sedes.get(clazz);
+    }
+
+}
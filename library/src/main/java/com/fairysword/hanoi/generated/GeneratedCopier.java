@@ -0,0 +1,26 @@
+package com.fairysword.hanoi.generated;
+
+import com.fairysword.hanoi.CopyException;
+import com.fairysword.hanoi.Jock;
+
+/**
+ * Copier of a single class generated for {@link Generate}, copies the fields honouring their
+ * {@link com.fairysword.hanoi.policy.Policy} annotations
+ */
+public interface GeneratedCopier<T> {
+    /**
+     * @param jock     the jock running the copy
+     * @param original the source object
+     * @param deep     deep copies field values within the running copy
+     * @return the copy of the source object
+     * @throws CopyException
+     */
+    T copy(Jock jock, T original, DeepCopier deep) throws CopyException;
+
+    /**
+     * deep copy of a field value
+     */
+    interface DeepCopier {
+        Object copy(Object value) throws CopyException;
+    }
+}
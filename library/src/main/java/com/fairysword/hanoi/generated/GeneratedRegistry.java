@@ -0,0 +1,14 @@
+package com.fairysword.hanoi.generated;
+
+import java.util.Map;
+
+/**
+ * Registry of the generated code of a compilation, the processor writes one per module
+ */
+public interface GeneratedRegistry {
+    /**
+     * @param copiers put the generated copiers keyed by class
+     * @param sedes   put the generated readers / writers keyed by class
+     */
+    void register(Map<Class<?>, GeneratedCopier<?>> copiers, Map<Class<?>, GeneratedSedes<?>> sedes);
+}
@@ -0,0 +1,27 @@
+package com.fairysword.hanoi.generated;
+
+import android.os.Parcel;
+
+/**
+ * Reader / writer of the fields of a single class generated for {@link Generate}. primitive fields are
+ * written raw, reference fields through the running {@link com.fairysword.hanoi.Sedes} stream
+ */
+public interface GeneratedSedes<T> {
+    void write(Parcel p, T value, ValueWriter writer);
+
+    T read(Parcel p, ValueReader reader) throws ClassNotFoundException;
+
+    /**
+     * write a typed value to the running stream
+     */
+    interface ValueWriter {
+        void write(Parcel p, Object value);
+    }
+
+    /**
+     * read a typed value from the running stream
+     */
+    interface ValueReader {
+        Object read(Parcel p) throws ClassNotFoundException;
+    }
+}
@@ -1,7 +1,11 @@
 package com.fairysword.hanoi.instance;
 
+import com.fairysword.hanoi.utils.ClassCache;
+
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -10,6 +14,9 @@ import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 /**
  * Created by pal on 2016-06-15.
@@ -17,9 +24,21 @@ import java.util.concurrent.ConcurrentHashMap;
 public class InstancePool {
 
     private static Map<Class<?>, Object> defaultValues = new HashMap<>();
-    private static Map<Class<?>, Constructor<?>> defaultConstructors = new ConcurrentHashMap<>();
-    private static Map<Constructor<?>, Object[]> constructorDefaultParams = new ConcurrentHashMap<>();
+    private static final ClassCache<Instantiator> instantiators = new ClassCache<>("instantiators");
     private static Map<Class<?>, VoidParamInstance> voidParamInstanceMap = new HashMap<>();
+    private static Map<Class<?>, SizedInstance> sizedInstanceMap = new HashMap<>();
+
+    private static volatile int recyclePoolSize = 16;
+    private static volatile boolean hasRecycled = false;
+    // the pools of a class on each thread, weakly keyed so pooled instances do not pin their class loader
+    private static final ClassCache<ThreadLocal<RecyclePool>> recyclePools = new ClassCache<>("recycle pools");
+    // bumped by clearRecyclePool, pools of an older generation are emptied on their next use
+    private static final ThreadLocal<int[]> recycleGenerations = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[1];
+        }
+    };
 
     // default values
     static {
@@ -53,6 +72,8 @@ public class InstancePool {
         // for list
         voidParamInstanceMap.put(ArrayList.class, ArrayList::new);
         voidParamInstanceMap.put(LinkedList.class, LinkedList::new);
+        voidParamInstanceMap.put(CopyOnWriteArrayList.class, CopyOnWriteArrayList::new);
+        voidParamInstanceMap.put(ConcurrentLinkedQueue.class, ConcurrentLinkedQueue::new);
 
         // for map
         voidParamInstanceMap.put(HashMap.class, HashMap::new);
@@ -64,6 +85,28 @@ public class InstancePool {
         // for set
         voidParamInstanceMap.put(HashSet.class, HashSet::new);
         voidParamInstanceMap.put(LinkedHashSet.class, LinkedHashSet::new);
+        voidParamInstanceMap.put(CopyOnWriteArraySet.class, CopyOnWriteArraySet::new);
+    }
+
+    static {
+        // for list
+        sizedInstanceMap.put(ArrayList.class, ArrayList::new);
+        sizedInstanceMap.put(LinkedList.class, size -> new LinkedList<>());
+        // concurrent ones are read through their weakly consistent iterators instead of their internals
+        sizedInstanceMap.put(CopyOnWriteArrayList.class, size -> new CopyOnWriteArrayList<>());
+        sizedInstanceMap.put(ConcurrentLinkedQueue.class, size -> new ConcurrentLinkedQueue<>());
+
+        // for map
+        sizedInstanceMap.put(HashMap.class, size -> new HashMap<>(hashCapacity(size)));
+        sizedInstanceMap.put(LinkedHashMap.class, size -> new LinkedHashMap<>(hashCapacity(size)));
+        sizedInstanceMap.put(ConcurrentHashMap.class, size -> new ConcurrentHashMap<>(hashCapacity(size)));
+        sizedInstanceMap.put(android.util.ArrayMap.class, android.util.ArrayMap::new);
+        sizedInstanceMap.put(android.support.v4.util.ArrayMap.class, android.support.v4.util.ArrayMap::new);
+
+        // for set
+        sizedInstanceMap.put(HashSet.class, size -> new HashSet<>(hashCapacity(size)));
+        sizedInstanceMap.put(LinkedHashSet.class, size -> new LinkedHashSet<>(hashCapacity(size)));
+        sizedInstanceMap.put(CopyOnWriteArraySet.class, size -> new CopyOnWriteArraySet<>());
     }
 
     public static Object newInstance(Class<?> clazz) {
@@ -74,15 +117,164 @@ public class InstancePool {
         }
 
         // using reflect constructor
-        Constructor<?> constructor = defaultConstructors.get(clazz);
-        if (constructor == null) {
-            constructor = findConstructor(clazz);
+        return instantiatorOf(clazz).newInstance();
+    }
+
+    /**
+     * @param clazz the class
+     * @return true if the class is a collection or map that {@link #obtain(Class, int)} creates presized
+     */
+    public static boolean isSized(Class<?> clazz) {
+        return sizedInstanceMap.containsKey(clazz);
+    }
+
+    /**
+     * take a recycled instance of the class on the current thread, or create a new one with room for the
+     * elements
+     *
+     * @param clazz a class that {@link #isSized}
+     * @param size  the expected number of elements
+     * @return a recycled (and emptied by its release) or new instance
+     */
+    public static Object obtain(Class<?> clazz, int size) {
+        Object recycled = recycled(clazz);
+        if (recycled != null) {
+            if (recycled instanceof ArrayList) {
+                ((ArrayList<?>) recycled).ensureCapacity(size);
+            }
+            return recycled;
+        }
+        SizedInstance sizedInstance = sizedInstanceMap.get(clazz);
+        return sizedInstance != null ? sizedInstance.newInstance(size) : newInstance(clazz);
+    }
+
+    /**
+     * find and cache the constructor and default params used to create instances of the class
+     *
+     * @param clazz the class
+     */
+    public static void prepare(Class<?> clazz) {
+        if (clazz.isInterface() || clazz.isArray() || clazz.isPrimitive() || Modifier.isAbstract(clazz.getModifiers())
+                || voidParamInstanceMap.containsKey(clazz)) {
+            return;
+        }
+        instantiatorOf(clazz);
+    }
+
+    private static Instantiator instantiatorOf(Class<?> clazz) {
+        Instantiator instantiator = instantiators.get(clazz);
+        if (instantiator == null) {
+            Constructor<?> constructor = findConstructor(clazz);
             //noinspection ConstantConditions
             constructor.setAccessible(true);
-            defaultConstructors.put(clazz, constructor);
+            instantiator = instantiators.putIfAbsent(clazz, new Instantiator(constructor, makeDefaultParams(constructor)));
+        }
+        return instantiator;
+    }
+
+    /**
+     * take a recycled instance of the class on the current thread, or create a new one
+     *
+     * @param clazz the class
+     * @return a recycled or new instance, the state of a recycled instance is whatever it was recycled with
+     */
+    public static Object obtain(Class<?> clazz) {
+        Object recycled = recycled(clazz);
+        return recycled != null ? recycled : newInstance(clazz);
+    }
+
+    /**
+     * @param clazz the class
+     * @return a recycled instance of the class on the current thread, or null
+     */
+    public static Object recycled(Class<?> clazz) {
+        if (!hasRecycled) {
+            return null;
+        }
+        ArrayDeque<Object> pool = recyclePool(clazz, false);
+        return pool != null ? pool.pollLast() : null;
+    }
+
+    /**
+     * put an instance back to the recycle pool of its class on the current thread
+     *
+     * @param object the instance, must not be used by the caller any more
+     * @return false if the pool of the class is full
+     */
+    public static boolean recycle(Object object) {
+        ArrayDeque<Object> pool = recyclePool(object.getClass(), true);
+        if (pool.size() >= recyclePoolSize) {
+            return false;
+        }
+        pool.addLast(object);
+        hasRecycled = true;
+        return true;
+    }
+
+    /**
+     * set the max size of the recycle pool of each class on each thread, default is 16
+     *
+     * @param size the max size, 0 disables recycling
+     */
+    public static void setRecyclePoolSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("negative pool size: " + size);
         }
+        recyclePoolSize = size;
+    }
+
+    /**
+     * drop all recycled instances of the current thread
+     */
+    public static void clearRecyclePool() {
+        recycleGenerations.get()[0]++;
+    }
+
+    /**
+     * @param create true to create the pool if the class has none on the current thread
+     * @return the pool of the class on the current thread, or null
+     */
+    private static ArrayDeque<Object> recyclePool(Class<?> clazz, boolean create) {
+        ThreadLocal<RecyclePool> local = recyclePools.get(clazz);
+        if (local == null) {
+            if (!create) {
+                return null;
+            }
+            local = recyclePools.putIfAbsent(clazz, new ThreadLocal<RecyclePool>());
+        }
+        int generation = recycleGenerations.get()[0];
+        RecyclePool pool = local.get();
+        if (pool == null) {
+            if (!create) {
+                return null;
+            }
+            pool = new RecyclePool();
+            local.set(pool);
+        } else if (pool.generation != generation) {
+            pool.instances.clear();
+        }
+        pool.generation = generation;
+        return pool.instances;
+    }
+
+    private static final class RecyclePool {
+        final ArrayDeque<Object> instances = new ArrayDeque<>();
+        int generation;
+    }
 
-        return newInstance(constructor);
+    /**
+     * @param type the class
+     * @return the default value of the class, null for non-primitive classes
+     */
+    public static Object defaultValue(Class<?> type) {
+        return type.isPrimitive() ? defaultValues.get(type) : null;
+    }
+
+    /**
+     * @return the capacity of a hash based container that holds the elements without rehashing
+     */
+    private static int hashCapacity(int size) {
+        return size < 3 ? size + 1 : (int) (size / 0.75f + 1f);
     }
 
     private static boolean fastNewInstance(Class<?> clazz, Object[] objects) {
@@ -102,23 +294,6 @@ public class InstancePool {
         return null;
     }
 
-    private static Object newInstance(Constructor<?> constructor) {
-        // get the default params for this constructor
-        Object[] constructorParams = constructorDefaultParams.get(constructor);
-        if (constructorParams == null) {
-            constructorParams = makeDefaultParams(constructor);
-            constructorDefaultParams.put(constructor, constructorParams);
-        }
-
-        Object object = null;
-        try {
-            object = constructor.newInstance(constructorParams);
-        } catch (InstantiationException | IllegalArgumentException | InvocationTargetException | IllegalAccessException e) {
-            e.printStackTrace();
-        }
-        return object;
-    }
-
     private static Object[] makeDefaultParams(Constructor<?> constructor) {
         Class<?>[] paramTypes = constructor.getParameterTypes();
         Object[] constructorParams = new Object[paramTypes.length];
@@ -130,4 +305,24 @@ public class InstancePool {
         return constructorParams;
     }
 
+    private static final class Instantiator {
+        final Constructor<?> constructor;
+        final Object[] params;
+
+        Instantiator(Constructor<?> constructor, Object[] params) {
+            this.constructor = constructor;
+            this.params = params;
+        }
+
+        Object newInstance() {
+            Object object = null;
+            try {
+                object = constructor.newInstance(params);
+            } catch (InstantiationException | IllegalArgumentException | InvocationTargetException | IllegalAccessException e) {
+                e.printStackTrace();
+            }
+            return object;
+        }
+    }
+
 }
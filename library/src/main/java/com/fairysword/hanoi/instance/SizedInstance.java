@@ -0,0 +1,14 @@
+package com.fairysword.hanoi.instance;
+
+/**
+ * Creates a collection or map with room for a number of elements
+ */
+public interface SizedInstance {
+    /**
+     * create an empty instance
+     *
+     * @param size the expected number of elements
+     * @return an empty instance
+     */
+    Object newInstance(int size);
+}
@@ -0,0 +1,17 @@
+package com.fairysword.hanoi.policy;
+
+import com.fairysword.hanoi.CopyException;
+import com.fairysword.hanoi.Jock;
+
+/**
+ * Custom copy logic for every instance of a class, registered with {@link Jock#registerCopier}
+ */
+public interface ClassCopier<T> {
+    /**
+     * @param jock     the jock running the copy, can be used to deep copy parts of the instance
+     * @param original the original instance, never null
+     * @return the copy
+     * @throws CopyException
+     */
+    T copy(Jock jock, T original) throws CopyException;
+}
@@ -0,0 +1,23 @@
+package com.fairysword.hanoi.policy;
+
+/**
+ * How {@link com.fairysword.hanoi.Jock} treats the value of a field while copying
+ */
+public enum CopyPolicy {
+    /**
+     * deep copy the field value (the default for non-transient fields)
+     */
+    DEEP,
+    /**
+     * share the original reference with the copy
+     */
+    SHALLOW,
+    /**
+     * do not copy the field, the copy keeps the value left by instantiation (usually null or 0)
+     */
+    SKIP,
+    /**
+     * copy the field value with a registered {@link FieldCopier}
+     */
+    CUSTOM
+}
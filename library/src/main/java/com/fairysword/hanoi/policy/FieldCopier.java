@@ -0,0 +1,17 @@
+package com.fairysword.hanoi.policy;
+
+import com.fairysword.hanoi.CopyException;
+import com.fairysword.hanoi.Jock;
+
+/**
+ * Custom copy logic for a single field, used with {@link CopyPolicy#CUSTOM}
+ */
+public interface FieldCopier {
+    /**
+     * @param jock  the jock running the copy, can be used to deep copy parts of the value
+     * @param value the original field value, may be null
+     * @return the value assigned to the field of the copy
+     * @throws CopyException
+     */
+    Object copy(Jock jock, Object value) throws CopyException;
+}
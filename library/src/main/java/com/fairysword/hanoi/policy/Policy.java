@@ -0,0 +1,23 @@
+package com.fairysword.hanoi.policy;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declare the {@link CopyPolicy} of a field, overrides the default policy of transient fields
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface Policy {
+    /**
+     * @return the copy policy of the field
+     */
+    CopyPolicy value();
+
+    /**
+     * @return the copier used by {@link CopyPolicy#CUSTOM}, must have a no-arg constructor
+     */
+    Class<? extends FieldCopier> copier() default FieldCopier.class;
+}
@@ -0,0 +1,15 @@
+package com.fairysword.hanoi.policy;
+
+import java.util.concurrent.locks.Lock;
+
+/**
+ * The read lock of objects of a class, held by a snapshot copy only while the own fields or elements of a
+ * single object are read, never while its children are copied
+ */
+public interface SnapshotLock<T> {
+    /**
+     * @param object the object about to be read
+     * @return the lock guarding the object, null to read it without lock
+     */
+    Lock readLock(T object);
+}
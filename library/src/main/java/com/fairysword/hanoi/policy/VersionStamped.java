@@ -0,0 +1,13 @@
+package com.fairysword.hanoi.policy;
+
+/**
+ * An object that counts its changes, so a snapshot copy can read it without blocking its writers.
+ * writers increment the version before and after each change, so it is odd while a change is in progress,
+ * and a read that saw the same even version before and after is consistent
+ */
+public interface VersionStamped {
+    /**
+     * @return the current version, must be read with volatile semantics
+     */
+    long version();
+}
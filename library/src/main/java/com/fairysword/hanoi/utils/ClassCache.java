@@ -0,0 +1,300 @@
+package com.fairysword.hanoi.utils;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Class keyed metadata cache that does not pin class loaders.
+ * <p>
+ * Reads are lock-free, writes are serialized. Keys are held weakly, values of classes from class loaders
+ * other than the one of hanoi (or its parents) are held softly, because metadata like fields references its
+ * class and would otherwise keep the class loader alive. An optional size bound evicts the oldest entries.
+ */
+public final class ClassCache<V> {
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final List<ClassCache<?>> caches = new CopyOnWriteArrayList<>();
+    private static volatile boolean recordStats = false;
+
+    private final String name;
+    private final ReferenceQueue<Class<?>> staleKeys = new ReferenceQueue<>();
+    private final ArrayDeque<Entry<V>> insertionOrder = new ArrayDeque<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile AtomicReferenceArray<Entry<V>> table = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+    private int size = 0;
+    private int maxSize = 0;
+
+    /**
+     * @param name the name reported in {@link Stats}
+     */
+    public ClassCache(String name) {
+        this.name = name;
+        caches.add(this);
+    }
+
+    /**
+     * @param clazz the class
+     * @return the cached value, or null
+     */
+    public V get(Class<?> clazz) {
+        AtomicReferenceArray<Entry<V>> t = table;
+        for (Entry<V> e = t.get(indexOf(System.identityHashCode(clazz), t.length())); e != null; e = e.next) {
+            if (e.get() == clazz) {
+                V value = e.value();
+                if (value != null) {
+                    if (recordStats) {
+                        hits.incrementAndGet();
+                    }
+                    return value;
+                }
+                break;
+            }
+        }
+        if (recordStats) {
+            misses.incrementAndGet();
+        }
+        return null;
+    }
+
+    /**
+     * @param clazz the class
+     * @param value the value
+     * @return the value already cached for the class, or the given value
+     */
+    public synchronized V putIfAbsent(Class<?> clazz, V value) {
+        expungeStaleEntries();
+        int hash = System.identityHashCode(clazz);
+        AtomicReferenceArray<Entry<V>> t = table;
+        int index = indexOf(hash, t.length());
+        for (Entry<V> e = t.get(index); e != null; e = e.next) {
+            if (e.get() == clazz) {
+                V existing = e.value();
+                if (existing != null) {
+                    return existing;
+                }
+                remove(e); // the soft value was cleared
+                break;
+            }
+        }
+
+        if (maxSize > 0 && size >= maxSize) {
+            remove(insertionOrder.peekFirst());
+        }
+        if (size >= t.length() * 3 / 4) {
+            t = resize();
+            index = indexOf(hash, t.length());
+        }
+        Object held = isPinnedAnyway(clazz.getClassLoader()) ? value : new SoftValue<>(value);
+        Entry<V> entry = new Entry<>(clazz, hash, held, staleKeys, t.get(index));
+        t.set(index, entry);
+        insertionOrder.addLast(entry);
+        size++;
+        return value;
+    }
+
+    /**
+     * drop all cached values
+     */
+    public synchronized void clear() {
+        table = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+        insertionOrder.clear();
+        size = 0;
+        //noinspection StatementWithEmptyBody
+        while (staleKeys.poll() != null) {
+        }
+    }
+
+    /**
+     * @param maxSize the max number of cached classes, 0 for unbounded
+     */
+    public synchronized void setMaxSize(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("negative max size: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        while (maxSize > 0 && size > maxSize) {
+            remove(insertionOrder.peekFirst());
+        }
+    }
+
+    /**
+     * @return the statistics of this cache
+     */
+    public synchronized Stats stats() {
+        expungeStaleEntries();
+        return new Stats(name, size, maxSize, hits.get(), misses.get());
+    }
+
+    /**
+     * bound every cache of hanoi
+     *
+     * @param maxSize the max number of cached classes per cache, 0 for unbounded
+     */
+    public static void setMaxSizeOfAll(int maxSize) {
+        for (ClassCache<?> cache : caches) {
+            cache.setMaxSize(maxSize);
+        }
+    }
+
+    /**
+     * @param record count hits and misses of every cache, off by default
+     */
+    public static void setRecordStats(boolean record) {
+        recordStats = record;
+    }
+
+    /**
+     * @return the statistics of every cache of hanoi
+     */
+    public static List<Stats> statsOfAll() {
+        List<Stats> stats = new ArrayList<>();
+        for (ClassCache<?> cache : caches) {
+            stats.add(cache.stats());
+        }
+        return stats;
+    }
+
+    private void expungeStaleEntries() {
+        Reference<? extends Class<?>> stale;
+        while ((stale = staleKeys.poll()) != null) {
+            remove((Entry<?>) stale);
+        }
+    }
+
+    /**
+     * unlink the entry, the entries before it in its bucket are copied so readers never see a broken chain
+     */
+    @SuppressWarnings("unchecked")
+    private void remove(Entry<?> entry) {
+        AtomicReferenceArray<Entry<V>> t = table;
+        int index = indexOf(entry.hash, t.length());
+        List<Entry<V>> before = new ArrayList<>();
+        Entry<V> e = t.get(index);
+        while (e != null && e != entry) {
+            before.add(e);
+            e = e.next;
+        }
+        if (e == null) {
+            return; // already removed, or replaced by a copy
+        }
+        insertionOrder.remove(entry);
+        size--;
+
+        Entry<V> newHead = (Entry<V>) entry.next;
+        for (int i = before.size() - 1; i >= 0; i--) {
+            newHead = relink(before.get(i), newHead);
+        }
+        t.set(index, newHead);
+    }
+
+    private AtomicReferenceArray<Entry<V>> resize() {
+        AtomicReferenceArray<Entry<V>> t = new AtomicReferenceArray<>(table.length() * 2);
+        List<Entry<V>> entries = new ArrayList<>(insertionOrder);
+        insertionOrder.clear();
+        size = 0;
+        for (Entry<V> e : entries) {
+            if (e.get() == null) {
+                continue; // the class is unloaded
+            }
+            int index = indexOf(e.hash, t.length());
+            t.set(index, relink(e, t.get(index)));
+            size++;
+        }
+        table = t;
+        return t;
+    }
+
+    /**
+     * @return a copy of the entry linked to next, in place of the entry in the insertion order, or next if
+     * the key of the entry is already cleared
+     */
+    private Entry<V> relink(Entry<V> entry, Entry<V> next) {
+        Class<?> clazz = entry.get();
+        Object value = entry.value;
+        if (clazz == null) {
+            if (insertionOrder.remove(entry)) {
+                size--;
+            }
+            return next;
+        }
+        Entry<V> copy = new Entry<>(clazz, entry.hash, value, staleKeys, next);
+        if (insertionOrder.remove(entry)) {
+            insertionOrder.addFirst(copy); // copies are rare, the eviction order is approximate anyway
+        } else {
+            insertionOrder.addLast(copy);
+        }
+        return copy;
+    }
+
+    private static int indexOf(int hash, int length) {
+        return (hash ^ (hash >>> 16)) & (length - 1);
+    }
+
+    private static boolean isPinnedAnyway(ClassLoader loader) {
+        ClassLoader own = ClassCache.class.getClassLoader();
+        for (ClassLoader l = own; l != null; l = l.getParent()) {
+            if (l == loader) {
+                return true;
+            }
+        }
+        return loader == null;
+    }
+
+    /**
+     * statistics of a cache
+     */
+    public static final class Stats {
+        public final String name;
+        public final int size;
+        public final int maxSize;
+        public final long hits;
+        public final long misses;
+
+        Stats(String name, int size, int maxSize, long hits, long misses) {
+            this.name = name;
+            this.size = size;
+            this.maxSize = maxSize;
+            this.hits = hits;
+            this.misses = misses;
+        }
+
+        @Override
+        public String toString() {
+            return name + "{size=" + size + ", maxSize=" + maxSize + ", hits=" + hits + ", misses=" + misses + "}";
+        }
+    }
+
+    private static final class SoftValue<V> extends SoftReference<V> {
+        SoftValue(V value) {
+            super(value);
+        }
+    }
+
+    private static final class Entry<V> extends WeakReference<Class<?>> {
+        final int hash;
+        final Entry<V> next;
+        final Object value; // V, or SoftValue<V> for classes that can be unloaded
+
+        Entry(Class<?> clazz, int hash, Object value, ReferenceQueue<Class<?>> queue, Entry<V> next) {
+            super(clazz, queue);
+            this.hash = hash;
+            this.value = value;
+            this.next = next;
+        }
+
+        @SuppressWarnings("unchecked")
+        V value() {
+            return value instanceof SoftValue ? ((SoftValue<V>) value).get() : (V) value;
+        }
+    }
+
+}
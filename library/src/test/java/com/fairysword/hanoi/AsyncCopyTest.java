@@ -0,0 +1,87 @@
+package com.fairysword.hanoi;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * copies on replaced executor lanes, the default lanes need android thread priorities
+ */
+public class AsyncCopyTest {
+
+    public static class Item {
+        String name = "item";
+        List<Item> children = new ArrayList<>();
+    }
+
+    @Test
+    public void copyAsync_completesAndCallsBack() throws Exception {
+        HanoiExecutor.setExecutor(Priority.INTERACTIVE, Executors.newSingleThreadExecutor());
+        Item original = new Item();
+        original.children.add(new Item());
+
+        HanoiFuture<Object> future = Jock.getInstance().copyAsync(original, Priority.INTERACTIVE);
+        Item copy = (Item) future.get(10, TimeUnit.SECONDS);
+        assertNotSame(original, copy);
+        assertEquals(1, copy.children.size());
+        assertNotSame(original.children.get(0), copy.children.get(0));
+
+        final AtomicReference<Object> result = new AtomicReference<>();
+        future.addCallback(new HanoiFuture.Callback<Object>() {
+            @Override
+            public void onSuccess(Object value) {
+                result.set(value);
+            }
+
+            @Override
+            public void onFailure(Throwable error) {
+                result.set(error);
+            }
+        });
+        assertSame(copy, result.get());
+    }
+
+    @Test
+    public void copyAsync_rejectedFails() throws Exception {
+        HanoiExecutor.setExecutor(Priority.BACKGROUND, command -> {
+            throw new RejectedExecutionException("full");
+        });
+
+        HanoiFuture<Object> future;
+        try {
+            future = Jock.getInstance().copyAsync(new Item(), Priority.BACKGROUND);
+        } finally {
+            HanoiExecutor.setExecutor(Priority.BACKGROUND, Executors.newSingleThreadExecutor());
+        }
+        final CountDownLatch failed = new CountDownLatch(1);
+        future.addCallback(new HanoiFuture.Callback<Object>() {
+            @Override
+            public void onSuccess(Object value) {
+            }
+
+            @Override
+            public void onFailure(Throwable error) {
+                if (error instanceof RejectedExecutionException) {
+                    failed.countDown();
+                }
+            }
+        });
+        assertTrue(failed.await(10, TimeUnit.SECONDS));
+        try {
+            future.get();
+            fail("a rejected copy must not complete");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+    }
+
+}
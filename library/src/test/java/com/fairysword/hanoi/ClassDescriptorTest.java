@@ -0,0 +1,53 @@
+package com.fairysword.hanoi;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * flattened field metadata, subclass fields first and shadowed fields kept apart
+ */
+public class ClassDescriptorTest {
+
+    public static class Base {
+        String name = "base";
+        int count;
+    }
+
+    public static class Derived extends Base {
+        String name = "derived";
+        long total;
+        Object any;
+    }
+
+    @Test
+    public void of_listsSubclassFieldsFirst() {
+        ClassDescriptor descriptor = ClassDescriptor.of(Derived.class);
+
+        assertEquals(Arrays.asList("name", "total", "any", "name", "count"), Arrays.asList(descriptor.names));
+        assertEquals(1, descriptor.longFields.length);
+        assertEquals(1, descriptor.intFields.length);
+        assertEquals(2, descriptor.immutableFields.length);
+        assertEquals(1, descriptor.referenceFields.length);
+        assertTrue(descriptor.hasPrimitives);
+        assertSame(descriptor, ClassDescriptor.of(Derived.class));
+    }
+
+    @Test
+    public void copy_keepsShadowedFields() throws Exception {
+        Derived original = new Derived();
+        ((Base) original).name = "shadowed";
+        original.name = "visible";
+        original.count = 2;
+        original.total = 3L;
+
+        Derived copy = (Derived) Jock.getInstance().copy(original);
+        assertEquals("visible", copy.name);
+        assertEquals("shadowed", ((Base) copy).name);
+        assertEquals(2, copy.count);
+        assertEquals(3L, copy.total);
+    }
+
+}
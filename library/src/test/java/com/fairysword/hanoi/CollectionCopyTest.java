@@ -0,0 +1,157 @@
+package com.fairysword.hanoi;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * known collections and maps are copied through their public api, in copy, copyVersion and copyAll
+ */
+public class CollectionCopyTest {
+
+    /**
+     * hashed by identity, so a copied key only finds its entry if the copy is rehashed
+     */
+    public static class Key {
+        int id;
+
+        public Key() {
+        }
+
+        Key(int id) {
+            this.id = id;
+        }
+    }
+
+    public static class Item {
+        int id;
+    }
+
+    private static Item item(int id) {
+        Item item = new Item();
+        item.id = id;
+        return item;
+    }
+
+    private static Map<Key, String> keyed(int size) {
+        Map<Key, String> map = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            map.put(new Key(i), "v" + i);
+        }
+        return map;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void copy_longLinkedList() throws Exception {
+        LinkedList<Item> list = new LinkedList<>();
+        for (int i = 0; i < 100000; i++) {
+            list.add(item(i));
+        }
+
+        LinkedList<Item> copy = (LinkedList<Item>) Jock.getInstance().copy(list);
+        assertEquals(100000, copy.size());
+        assertNotSame(list.getLast(), copy.getLast());
+        assertEquals(99999, copy.getLast().id);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void copy_rehashesMapKeys() throws Exception {
+        Map<Key, String> copy = (Map<Key, String>) Jock.getInstance().copy(keyed(50));
+
+        assertEquals(50, copy.size());
+        for (Key key : copy.keySet()) {
+            assertEquals("v" + key.id, copy.get(key));
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void copy_keepsAccessOrder() throws Exception {
+        LinkedHashMap<String, Integer> map = new LinkedHashMap<>(16, 0.75f, true);
+        map.put("a", 1);
+        map.put("b", 2);
+        map.put("c", 3);
+        map.get("a");
+
+        LinkedHashMap<String, Integer> copy = (LinkedHashMap<String, Integer>) Jock.getInstance().copy(map);
+        assertEquals(Arrays.asList("b", "c", "a"), new ArrayList<>(copy.keySet()));
+        copy.get("b");
+        assertEquals(Arrays.asList("c", "a", "b"), new ArrayList<>(copy.keySet()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void copyVersion_rehashesMapKeys() throws Exception {
+        Jock jock = Jock.getInstance();
+        Map<Key, String> map = keyed(5);
+        Map<Key, String> v1 = (Map<Key, String>) jock.copy(map);
+        map.put(new Key(5), "v5");
+
+        Map<Key, String> v2 = (Map<Key, String>) jock.copyVersion(map, v1);
+        assertNotSame(v1, v2);
+        assertEquals(6, v2.size());
+        for (Key key : v2.keySet()) {
+            assertEquals("v" + key.id, v2.get(key));
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void copyVersion_unchangedContainersAreShared() throws Exception {
+        Jock jock = Jock.getInstance();
+        List<Item> list = new ArrayList<>(Arrays.asList(item(1), item(2), item(3)));
+        Map<String, Item> map = new HashMap<>();
+        map.put("a", item(1));
+        map.put("b", item(2));
+        List<Item> v1 = (List<Item>) jock.copy(list);
+        Map<String, Item> m1 = (Map<String, Item>) jock.copy(map);
+
+        assertSame(v1, jock.copyVersion(list, v1));
+        assertSame(m1, jock.copyVersion(map, m1));
+
+        list.get(1).id = 20;
+        List<Item> v2 = (List<Item>) jock.copyVersion(list, v1);
+        assertNotSame(v1, v2);
+        assertSame(v1.get(0), v2.get(0));
+        assertEquals(20, v2.get(1).id);
+        assertEquals(2, v1.get(1).id);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void copyAll_collectionRoots() throws Exception {
+        Map<Key, String> map = keyed(10);
+        List<Object> roots = Arrays.<Object>asList(map, new ArrayList<>(Arrays.asList(item(1))));
+
+        List<Object> copies = Jock.getInstance().copyAll(roots);
+        Map<Key, String> copy = (Map<Key, String>) copies.get(0);
+        Iterator<Key> keys = copy.keySet().iterator();
+        Key key = keys.next();
+        assertEquals("v" + key.id, copy.get(key));
+        assertEquals(1, ((List<Item>) copies.get(1)).get(0).id);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void release_thenCopyReusesEmptiedContainers() throws Exception {
+        Jock jock = Jock.getInstance();
+        List<Item> list = new ArrayList<>(Arrays.asList(item(1), item(2)));
+        jock.release(jock.copy(list));
+
+        List<Item> copy = (List<Item>) jock.copy(list);
+        assertEquals(2, copy.size());
+        assertEquals(2, copy.get(1).id);
+    }
+
+}
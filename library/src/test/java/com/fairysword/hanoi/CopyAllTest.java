@@ -0,0 +1,117 @@
+package com.fairysword.hanoi;
+
+import com.fairysword.hanoi.generated.Generated;
+import com.fairysword.hanoi.generated.GeneratedCopier;
+import com.fairysword.hanoi.generated.GeneratedRegistry;
+import com.fairysword.hanoi.generated.GeneratedSedes;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * batch copies of lists and arrays, with and without sharing
+ */
+public class CopyAllTest {
+
+    public static class Node {
+        int value;
+        Node next;
+    }
+
+    /**
+     * has a generated copier, which copyAll must not use while preserving sharing
+     */
+    public static class Link {
+        int value;
+        Link next;
+    }
+
+    public static class LinkCopier implements GeneratedCopier<Link> {
+        @Override
+        public Link copy(Jock jock, Link original, DeepCopier deep) throws CopyException {
+            Link copy = new Link();
+            copy.value = original.value;
+            copy.next = (Link) deep.copy(original.next);
+            return copy;
+        }
+    }
+
+    private static Node node(int value, Node next) {
+        Node node = new Node();
+        node.value = value;
+        node.next = next;
+        return node;
+    }
+
+    @Test
+    public void copyAll_listKeepsOrder() throws Exception {
+        List<Node> copies = Jock.getInstance().copyAll(Arrays.asList(node(1, null), null, node(2, node(3, null))));
+
+        assertEquals(3, copies.size());
+        assertEquals(1, copies.get(0).value);
+        assertNull(copies.get(1));
+        assertEquals(3, copies.get(2).next.value);
+    }
+
+    @Test
+    public void copyAll_arrayKeepsComponentType() throws Exception {
+        Node[] originals = {node(1, null), node(2, null)};
+        Node[] copies = Jock.getInstance().copyAll(originals);
+
+        assertEquals(Node[].class, copies.getClass());
+        assertNotSame(originals[1], copies[1]);
+        assertEquals(2, copies[1].value);
+    }
+
+    @Test
+    public void copyAll_preservesSharing() throws Exception {
+        Node shared = node(0, null);
+        List<Node> roots = Arrays.asList(node(1, shared), node(2, shared));
+
+        List<Node> copies = Jock.getInstance().copyAll(roots, true);
+        assertNotSame(shared, copies.get(0).next);
+        assertSame(copies.get(0).next, copies.get(1).next);
+
+        List<Node> unshared = Jock.getInstance().copyAll(roots, false);
+        assertNotSame(unshared.get(0).next, unshared.get(1).next);
+    }
+
+    @Test
+    public void copyAll_cycles() throws Exception {
+        Node a = node(1, null);
+        Node b = node(2, a);
+        a.next = b;
+
+        List<Node> copies = Jock.getInstance().copyAll(Arrays.asList(a, b), true);
+        assertSame(copies.get(1), copies.get(0).next);
+        assertSame(copies.get(0), copies.get(1).next);
+    }
+
+    @Test
+    public void copyAll_cyclesOfGeneratedClasses() throws Exception {
+        Generated.register(new GeneratedRegistry() {
+            @Override
+            public void register(Map<Class<?>, GeneratedCopier<?>> copiers, Map<Class<?>, GeneratedSedes<?>> sedes) {
+                copiers.put(Link.class, new LinkCopier());
+            }
+        });
+        Link a = new Link();
+        Link b = new Link();
+        a.value = 1;
+        b.value = 2;
+        a.next = b;
+        b.next = a;
+
+        List<Link> copies = Jock.getInstance().copyAll(Arrays.asList(a, b), true);
+        assertNotSame(a, copies.get(0));
+        assertEquals(2, copies.get(0).next.value);
+        assertSame(copies.get(1), copies.get(0).next);
+        assertSame(copies.get(0), copies.get(1).next);
+    }
+
+}
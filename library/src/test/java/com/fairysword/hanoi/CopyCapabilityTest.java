@@ -0,0 +1,130 @@
+package com.fairysword.hanoi;
+
+import com.fairysword.hanoi.policy.ClassCopier;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * classes that copy themselves, through a registered copier or their public clone()
+ */
+public class CopyCapabilityTest {
+
+    public static class Base implements Cloneable {
+        static int clones;
+        int value;
+
+        @Override
+        public Base clone() {
+            clones++;
+            try {
+                return (Base) super.clone();
+            } catch (CloneNotSupportedException e) {
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    public static class Derived extends Base {
+        String extra = "extra";
+    }
+
+    /**
+     * its list would be shared by a shallow clone, so it is copied by reflection
+     */
+    public static class Deep extends Base {
+        List<String> names = new ArrayList<>();
+
+        @Override
+        public Deep clone() {
+            return (Deep) super.clone();
+        }
+    }
+
+    public static class Point {
+        int x;
+        int y;
+    }
+
+    public static class Shape {
+        Point origin;
+    }
+
+    @Test
+    public void copy_inheritedCloneKeepsClass() throws Exception {
+        Derived original = new Derived();
+        original.value = 5;
+        original.extra = "copied";
+
+        Object copy = Jock.getInstance().copy(original);
+        assertEquals(Derived.class, copy.getClass());
+        assertEquals(5, ((Derived) copy).value);
+        assertEquals("copied", ((Derived) copy).extra);
+    }
+
+    @Test
+    public void copy_declaredCloneIsUsed() throws Exception {
+        Base original = new Base();
+        original.value = 9;
+
+        int clones = Base.clones;
+        Base copy = (Base) Jock.getInstance().copy(original);
+        assertNotSame(original, copy);
+        assertEquals(9, copy.value);
+        assertEquals(clones + 1, Base.clones);
+    }
+
+    @Test
+    public void copy_deepFieldsAreNotCloned() throws Exception {
+        Deep original = new Deep();
+        original.names.add("a");
+
+        int clones = Base.clones;
+        Deep copy = (Deep) Jock.getInstance().copy(original);
+        assertEquals(clones, Base.clones);
+        assertNotSame(original.names, copy.names);
+        assertEquals(original.names, copy.names);
+    }
+
+    @Test
+    public void copy_registeredCopierIsUsedEverywhere() throws Exception {
+        final int[] calls = new int[1];
+        Jock jock = Jock.getInstance();
+        jock.registerCopier(Point.class, new ClassCopier<Point>() {
+            @Override
+            public Point copy(Jock jock, Point original) {
+                calls[0]++;
+                Point copy = new Point();
+                copy.x = original.x;
+                copy.y = -1;
+                return copy;
+            }
+        });
+
+        Shape shape = new Shape();
+        shape.origin = new Point();
+        shape.origin.x = 3;
+        shape.origin.y = 4;
+
+        Shape copy = (Shape) jock.copy(shape);
+        assertEquals(1, calls[0]);
+        assertEquals(3, copy.origin.x);
+        assertEquals(-1, copy.origin.y);
+
+        shape.origin.x = 8;
+        Shape next = (Shape) jock.copyVersion(shape, copy);
+        assertEquals(2, calls[0]);
+        assertEquals(8, next.origin.x);
+        assertEquals(-1, next.origin.y);
+
+        List<Shape> all = jock.copyAll(Arrays.asList(shape, shape), true);
+        assertEquals(3, calls[0]);
+        assertSame(all.get(0), all.get(1));
+        assertEquals(-1, all.get(0).origin.y);
+    }
+}
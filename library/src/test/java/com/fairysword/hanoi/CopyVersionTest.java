@@ -0,0 +1,68 @@
+package com.fairysword.hanoi;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * copyVersion returns the objects of the previous version for unchanged subgraphs
+ */
+public class CopyVersionTest {
+
+    public static class Node {
+        String name = "node";
+        int value;
+        List<Node> children = new ArrayList<>();
+        long[] samples = new long[]{1, 2, 3};
+    }
+
+    private static Node tree(int children) {
+        Node root = new Node();
+        for (int i = 0; i < children; i++) {
+            Node child = new Node();
+            child.value = i;
+            root.children.add(child);
+        }
+        return root;
+    }
+
+    @Test
+    public void copyVersion_unchangedReturnsPrevious() throws Exception {
+        Jock jock = Jock.getInstance();
+        Node root = tree(4);
+        Node v1 = (Node) jock.copy(root);
+
+        assertSame(v1, jock.copyVersion(root, v1));
+    }
+
+    @Test
+    public void copyVersion_sharesUnchangedChildren() throws Exception {
+        Jock jock = Jock.getInstance();
+        Node root = tree(4);
+        Node v1 = (Node) jock.copy(root);
+        root.children.get(2).name = "changed";
+
+        Node v2 = (Node) jock.copyVersion(root, v1);
+        assertNotSame(v1, v2);
+        assertSame(v1.samples, v2.samples);
+        assertSame(v1.children.get(0), v2.children.get(0));
+        assertNotSame(v1.children.get(2), v2.children.get(2));
+        assertEquals("changed", v2.children.get(2).name);
+        assertEquals("node", v1.children.get(2).name);
+    }
+
+    @Test
+    public void copyVersion_withoutPreviousCopies() throws Exception {
+        Jock jock = Jock.getInstance();
+        Node root = tree(2);
+
+        Node v1 = (Node) jock.copyVersion(root, null);
+        assertNotSame(root, v1);
+        assertNotSame(root.children.get(1), v1.children.get(1));
+        assertEquals(1, v1.children.get(1).value);
+    }
+
+}
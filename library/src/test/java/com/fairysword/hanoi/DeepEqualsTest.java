@@ -0,0 +1,90 @@
+package com.fairysword.hanoi;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * deepEquals and deepHash, with and without a structural hash cache
+ */
+public class DeepEqualsTest {
+
+    public static class Node {
+        String name = "node";
+        int value;
+        Node next;
+        List<Node> children = new ArrayList<>();
+        Map<String, Integer> counts = new HashMap<>();
+        long[] samples = new long[]{1, 2, 3};
+        transient int ignored;
+    }
+
+    private static Node tree(int children) {
+        Node root = new Node();
+        for (int i = 0; i < children; i++) {
+            Node child = new Node();
+            child.value = i;
+            child.counts.put("c" + i, i);
+            root.children.add(child);
+        }
+        return root;
+    }
+
+    private static Node cycle() {
+        Node a = new Node();
+        Node b = new Node();
+        a.value = 1;
+        b.value = 2;
+        a.next = b;
+        b.next = a;
+        return a;
+    }
+
+    @Test
+    public void deepEquals_comparesCopiedFields() throws Exception {
+        Jock jock = Jock.getInstance();
+        Node a = tree(3);
+        Node b = tree(3);
+        b.ignored = 5;
+
+        assertTrue(jock.deepEquals(a, b));
+        assertEquals(jock.deepHash(a), jock.deepHash(b));
+        b.children.get(1).samples[2] = 4;
+        assertFalse(jock.deepEquals(a, b));
+    }
+
+    @Test
+    public void deepEquals_cycles() throws Exception {
+        Jock jock = Jock.getInstance();
+        Node a = cycle();
+        Node b = cycle();
+
+        assertTrue(jock.deepEquals(a, b));
+        b.next.value = 3;
+        assertFalse(jock.deepEquals(a, b));
+    }
+
+    @Test
+    public void deepEquals_cachedCycles() throws Exception {
+        Jock jock = Jock.getInstance();
+        Node a = cycle();
+        Node b = cycle();
+        StructuralHashCache cache = new StructuralHashCache(1);
+        // start hashing at different nodes of the cycles
+        jock.deepHash(a.next, cache);
+        jock.deepHash(b, cache);
+
+        assertTrue(jock.deepEquals(a, b, cache));
+        assertEquals(jock.deepHash(a, cache), jock.deepHash(b, cache));
+        b.next.value = 3;
+        cache.invalidate(b.next);
+        cache.invalidate(b);
+        assertFalse(jock.deepEquals(a, b, cache));
+    }
+
+}
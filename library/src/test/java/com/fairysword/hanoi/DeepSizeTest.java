@@ -0,0 +1,53 @@
+package com.fairysword.hanoi;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * heap estimates of graphs, shared objects are counted once
+ */
+public class DeepSizeTest {
+
+    public static class Node {
+        int value;
+        long stamp;
+        Node next;
+    }
+
+    @Test
+    public void deepSizeOf_layout() {
+        Jock jock = Jock.getInstance();
+        assertEquals(24, jock.deepSizeOf(new Node())); // header, int, long and reference, aligned to 8
+        assertEquals(24, jock.deepSizeOf(new int[3]));
+        assertEquals(0, jock.deepSizeOf(null));
+    }
+
+    @Test
+    public void deepSizeOf_countsSharedOnce() {
+        Jock jock = Jock.getInstance();
+        Node shared = new Node();
+        Node[] twice = {shared, shared};
+        Node[] once = {shared, null};
+        assertEquals(jock.deepSizeOf(once), jock.deepSizeOf(twice));
+
+        Node cycle = new Node();
+        cycle.next = cycle;
+        assertEquals(24, jock.deepSizeOf(cycle));
+    }
+
+    @Test
+    public void deepSizeOf_sampled() {
+        Jock jock = Jock.getInstance();
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            nodes.add(new Node());
+        }
+        long full = jock.deepSizeOf(nodes, 1000);
+        assertEquals(full, jock.deepSizeOf(nodes, 8)); // alike elements, nothing is lost by sampling
+        assertTrue(full > 1000 * 24);
+    }
+}
@@ -0,0 +1,95 @@
+package com.fairysword.hanoi;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * the inline cache of a field or container sees other classes than the one it remembers
+ */
+public class DispatchTest {
+
+    enum Color {
+        RED, GREEN {
+            @Override
+            public String toString() {
+                return "green";
+            }
+        }
+    }
+
+    public static class Holder {
+        Object value;
+    }
+
+    public static class Node {
+        String name;
+
+        Node(String name) {
+            this.name = name;
+        }
+    }
+
+    private static List<Object> mixed() {
+        List<Object> values = new ArrayList<>();
+        values.add(new Node("a"));
+        values.add("text");
+        values.add(Color.GREEN);
+        values.add(new int[]{1, 2});
+        values.add(new Node("b"));
+        values.add(new ArrayList<>(Arrays.asList(new Node("c"), "d")));
+        values.add(Color.RED);
+        values.add(null);
+        values.add(new Node("e"));
+        return values;
+    }
+
+    @Test
+    public void copy_polymorphicContainer() throws Exception {
+        List<Object> original = mixed();
+        @SuppressWarnings("unchecked")
+        List<Object> copy = (List<Object>) Jock.getInstance().copy(original);
+
+        assertTrue(Jock.getInstance().deepEquals(original, copy));
+        assertNotSame(original.get(0), copy.get(0));
+        assertSame(Color.GREEN, copy.get(2));
+        assertSame(Color.RED, copy.get(6));
+    }
+
+    @Test
+    public void copy_polymorphicField() throws Exception {
+        // one field of one class, a different class of value each time
+        for (Object value : mixed()) {
+            Holder holder = new Holder();
+            holder.value = value;
+            Holder copy = (Holder) Jock.getInstance().copy(holder);
+            assertTrue(Jock.getInstance().deepEquals(value, copy.value));
+            if (value instanceof Node) {
+                assertNotSame(value, copy.value);
+            }
+        }
+    }
+
+    @Test
+    public void copy_polymorphicMap() throws Exception {
+        Map<Object, Object> original = new HashMap<>();
+        original.put("node", new Node("a"));
+        original.put(Color.GREEN, "green");
+        original.put(1, new int[]{3});
+        original.put(new Node("key"), Color.RED);
+        @SuppressWarnings("unchecked")
+        Map<Object, Object> copy = (Map<Object, Object>) Jock.getInstance().copy(original);
+
+        assertEquals(original.size(), copy.size());
+        assertTrue(copy.containsValue(Color.RED));
+        assertEquals("green", copy.get(Color.GREEN));
+        assertEquals("a", ((Node) copy.get("node")).name);
+        assertArrayEquals(new int[]{3}, (int[]) copy.get(1));
+    }
+}
@@ -0,0 +1,61 @@
+package com.fairysword.hanoi;
+
+import com.fairysword.hanoi.generated.Generated;
+import com.fairysword.hanoi.generated.GeneratedCopier;
+import com.fairysword.hanoi.generated.GeneratedRegistry;
+import com.fairysword.hanoi.generated.GeneratedSedes;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Jock prefers a registered generated copier, also when the registry comes after the first copy
+ */
+public class GeneratedCopierTest {
+
+    public static class Point {
+        int x;
+        List<String> tags = new ArrayList<>();
+        boolean generated;
+    }
+
+    public static class PointCopier implements GeneratedCopier<Point> {
+        @Override
+        @SuppressWarnings("unchecked")
+        public Point copy(Jock jock, Point original, DeepCopier deep) throws CopyException {
+            Point copy = new Point();
+            copy.x = original.x;
+            copy.tags = (List<String>) deep.copy(original.tags);
+            copy.generated = true;
+            return copy;
+        }
+    }
+
+    @Test
+    public void copy_usesCopierRegisteredAfterFirstCopy() throws Exception {
+        Jock jock = Jock.getInstance();
+        Point original = new Point();
+        original.x = 3;
+        original.tags.add("a");
+        assertFalse(((Point) jock.copy(original)).generated);
+
+        Generated.register(new GeneratedRegistry() {
+            @Override
+            public void register(Map<Class<?>, GeneratedCopier<?>> copiers, Map<Class<?>, GeneratedSedes<?>> sedes) {
+                copiers.put(Point.class, new PointCopier());
+            }
+        });
+
+        Point copy = (Point) jock.copy(original);
+        assertTrue(copy.generated);
+        assertEquals(3, copy.x);
+        assertNotSame(original.tags, copy.tags);
+        assertEquals(original.tags, copy.tags);
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.fairysword.hanoi;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * prewarm walks the field types of the roots and exports the warmed class names
+ */
+public class PrewarmTest {
+
+    public static class Root {
+        Leaf leaf;
+        List<Element> elements;
+        Map<String, Value> values;
+        Part[] parts;
+        int count;
+    }
+
+    public static class Leaf {
+        String name;
+    }
+
+    public static class Element {
+        long id;
+    }
+
+    public static class Value {
+        double value;
+    }
+
+    public static class Part {
+        char code;
+    }
+
+    @Test
+    public void prewarm_reachesFieldTypesAndTypeArguments() throws Exception {
+        Jock jock = Jock.getInstance();
+        jock.prewarm(Root.class);
+
+        List<String> warmed = jock.exportWarmedClasses();
+        assertTrue(warmed.contains(Root.class.getName()));
+        assertTrue(warmed.contains(Leaf.class.getName()));
+        assertTrue(warmed.contains(Element.class.getName()));
+        assertTrue(warmed.contains(Value.class.getName()));
+        assertTrue(warmed.contains(Part.class.getName()));
+    }
+
+    @Test
+    public void exportWarmedClasses_isSorted() throws Exception {
+        Jock jock = Jock.getInstance();
+        jock.prewarm(Root.class, Leaf.class);
+
+        List<String> warmed = jock.exportWarmedClasses();
+        for (int i = 1; i < warmed.size(); i++) {
+            assertTrue(warmed.get(i - 1).compareTo(warmed.get(i)) < 0);
+        }
+    }
+
+}
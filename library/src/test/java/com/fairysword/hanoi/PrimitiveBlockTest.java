@@ -0,0 +1,92 @@
+package com.fairysword.hanoi;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * primitive fields copied as one block per class, every kind with extreme values
+ */
+public class PrimitiveBlockTest {
+
+    public static class AllKinds {
+        long l;
+        double d;
+        int i;
+        float f;
+        short s1;
+        short s2;
+        short s3;
+        char c;
+        byte b1;
+        byte b2;
+        boolean z1;
+        boolean z2;
+        boolean z3;
+        String name;
+    }
+
+    public static class Child extends AllKinds {
+        int extra;
+    }
+
+    static void fill(AllKinds kinds) {
+        kinds.l = Long.MIN_VALUE;
+        kinds.d = -0.0;
+        kinds.i = -1;
+        kinds.f = Float.NaN;
+        kinds.s1 = Short.MIN_VALUE;
+        kinds.s2 = -1;
+        kinds.s3 = Short.MAX_VALUE;
+        kinds.c = '\uffff';
+        kinds.b1 = Byte.MIN_VALUE;
+        kinds.b2 = -1;
+        kinds.z1 = true;
+        kinds.z3 = true;
+        kinds.name = "kinds";
+    }
+
+    static void assertKinds(AllKinds kinds) {
+        assertEquals(Long.MIN_VALUE, kinds.l);
+        assertEquals(Double.doubleToRawLongBits(-0.0), Double.doubleToRawLongBits(kinds.d));
+        assertEquals(-1, kinds.i);
+        assertTrue(Float.isNaN(kinds.f));
+        assertEquals(Short.MIN_VALUE, kinds.s1);
+        assertEquals(-1, kinds.s2);
+        assertEquals(Short.MAX_VALUE, kinds.s3);
+        assertEquals('\uffff', kinds.c);
+        assertEquals(Byte.MIN_VALUE, kinds.b1);
+        assertEquals(-1, kinds.b2);
+        assertTrue(kinds.z1);
+        assertFalse(kinds.z2);
+        assertTrue(kinds.z3);
+        assertEquals("kinds", kinds.name);
+    }
+
+    @Test
+    public void copy_everyKind() throws Exception {
+        AllKinds original = new AllKinds();
+        fill(original);
+        AllKinds copy = (AllKinds) Jock.getInstance().copy(original);
+        assertNotSame(original, copy);
+        assertKinds(copy);
+    }
+
+    @Test
+    public void copy_inheritedFields() throws Exception {
+        Child original = new Child();
+        fill(original);
+        original.extra = 12;
+        Child copy = (Child) Jock.getInstance().copy(original);
+        assertKinds(copy);
+        assertEquals(12, copy.extra);
+    }
+
+    @Test
+    public void byteCount_packsSmallKinds() {
+        int[] kinds = {ClassDescriptor.KIND_SHORT, ClassDescriptor.KIND_SHORT, ClassDescriptor.KIND_SHORT,
+                ClassDescriptor.KIND_BYTE, ClassDescriptor.KIND_BOOLEAN, ClassDescriptor.KIND_LONG};
+        // two ints of shorts, one of bytes and booleans, and the long
+        assertEquals(4 + 4 + 4 + 8, PrimitiveBlock.byteCount(kinds));
+    }
+}
@@ -0,0 +1,92 @@
+package com.fairysword.hanoi;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * release followed by copy, the released objects come back through the recycle pools
+ */
+public class ReleaseTest {
+
+    public static class Node {
+        String name = "node";
+        int value;
+        List<Node> children = new ArrayList<>();
+        Map<String, Integer> counts = new HashMap<>();
+    }
+
+    public static class Counter {
+        transient int initial = 7;
+        int count;
+    }
+
+    public static class Holder {
+        List<String> single = Collections.singletonList("single");
+        Map<String, Integer> pair = Collections.singletonMap("one", 1);
+    }
+
+    private static Node tree(int children) {
+        Node root = new Node();
+        for (int i = 0; i < children; i++) {
+            Node child = new Node();
+            child.value = i;
+            child.counts.put("c" + i, i);
+            root.children.add(child);
+        }
+        return root;
+    }
+
+    @Test
+    public void release_thenCopyWritesEveryField() throws Exception {
+        Jock jock = Jock.getInstance();
+        Node original = tree(2);
+        Node copy = (Node) jock.copy(original);
+        jock.release(copy);
+
+        Node next = (Node) jock.copy(original);
+        assertEquals("node", next.name);
+        assertEquals(2, next.children.size());
+        assertNotSame(original.children, next.children);
+        assertEquals(1, next.children.get(1).value);
+        assertEquals(Integer.valueOf(1), next.children.get(1).counts.get("c1"));
+        assertEquals(1, next.children.get(1).counts.size());
+    }
+
+    @Test
+    public void release_thenCopyKeepsUncopiedFields() throws Exception {
+        Jock jock = Jock.getInstance();
+        Counter original = new Counter();
+        original.count = 3;
+        Counter copy = (Counter) jock.copy(original);
+        jock.release(copy);
+
+        Counter next = (Counter) jock.copy(original);
+        assertEquals(7, next.initial);
+        assertEquals(3, next.count);
+    }
+
+    @Test
+    public void release_leavesUnmodifiableContainers() throws Exception {
+        Jock jock = Jock.getInstance();
+        Holder copy = (Holder) jock.copy(new Holder());
+        List<String> single = copy.single;
+        Map<String, Integer> pair = copy.pair;
+        jock.release(copy);
+
+        assertEquals(Collections.singletonList("single"), single);
+        assertEquals(Collections.singletonMap("one", 1), pair);
+
+        List<String> fixed = Collections.unmodifiableList(new ArrayList<>(Arrays.asList("a", "b")));
+        jock.release(fixed);
+        assertEquals(Arrays.asList("a", "b"), fixed);
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.fairysword.hanoi;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * enum constants and registered singletons are shared by copies, never instantiated
+ */
+public class SingletonCopyTest {
+
+    public enum Color {
+        RED,
+        GREEN {
+            @Override
+            String label() {
+                return "green";
+            }
+        };
+
+        String label() {
+            return name();
+        }
+    }
+
+    public static class Config {
+        public static final Config DEFAULT = new Config();
+        int level = 3;
+    }
+
+    public static class Holder {
+        Color color;
+        Config config;
+        List<Object> items = new ArrayList<>();
+    }
+
+    @Test
+    public void copy_sharesEnumConstants() throws Exception {
+        Holder holder = new Holder();
+        holder.color = Color.GREEN;
+        holder.items.add(Color.RED);
+        holder.items.add(Color.GREEN);
+
+        Holder copy = (Holder) Jock.getInstance().copy(holder);
+        assertNotSame(holder, copy);
+        assertSame(Color.GREEN, copy.color);
+        assertSame(Color.RED, copy.items.get(0));
+        assertSame(Color.GREEN, copy.items.get(1));
+        assertSame(Color.GREEN, Jock.getInstance().copy(Color.GREEN));
+    }
+
+    @Test
+    public void copy_sharesRegisteredSingletons() throws Exception {
+        Jock jock = Jock.getInstance();
+        jock.registerSingleton(Config.DEFAULT);
+        jock.registerSingleton(Config.DEFAULT); // the same instance again is fine
+
+        Holder holder = new Holder();
+        holder.config = Config.DEFAULT;
+        holder.items.add(Collections.emptyList());
+
+        Holder copy = (Holder) jock.copy(holder);
+        assertSame(Config.DEFAULT, copy.config);
+        assertSame(Collections.emptyList(), copy.items.get(0));
+        assertSame(Config.DEFAULT, jock.copy(Config.DEFAULT));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void registerSingleton_rejectsSecondInstance() {
+        Jock.getInstance().registerSingleton(Config.DEFAULT);
+        Jock.getInstance().registerSingleton(new Config());
+    }
+}
@@ -0,0 +1,125 @@
+package com.fairysword.hanoi;
+
+import com.fairysword.hanoi.policy.SnapshotLock;
+import com.fairysword.hanoi.policy.VersionStamped;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.Assert.*;
+
+/**
+ * snapshot copies read each object on its own, under its lock and until its version is stable
+ */
+public class SnapshotTest {
+
+    public static class Node {
+        int value;
+        List<Node> children = new ArrayList<>();
+    }
+
+    public static class Locked {
+        Locked child;
+    }
+
+    /**
+     * reports the versions of its array, one per call, then the last one
+     */
+    public static class Stamped implements VersionStamped {
+        transient long[] versions;
+        transient int calls;
+        int value = 4;
+        Node child = new Node();
+
+        @Override
+        public long version() {
+            return versions[Math.min(calls++, versions.length - 1)];
+        }
+    }
+
+    @Test
+    public void snapshot_copiesGraph() throws Exception {
+        Node root = new Node();
+        for (int i = 0; i < 3; i++) {
+            Node child = new Node();
+            child.value = i;
+            root.children.add(child);
+        }
+        Node copy = (Node) Jock.getInstance().snapshot(root);
+        assertNotSame(root.children.get(2), copy.children.get(2));
+        assertTrue(Jock.getInstance().deepEquals(root, copy));
+    }
+
+    @Test
+    public void snapshot_readsAgainWhileVersionChanges() throws Exception {
+        Stamped stamped = new Stamped();
+        stamped.versions = new long[]{1, 2, 4, 4}; // in progress, then changed during the read, then stable
+        Stamped copy = (Stamped) Jock.getInstance().snapshot(stamped);
+        assertEquals(4, copy.value);
+        assertNotSame(stamped.child, copy.child);
+        assertEquals(5, stamped.calls); // two per read, one for the version in progress
+    }
+
+    @Test
+    public void snapshot_failsAfterRetries() throws Exception {
+        Jock jock = Jock.getInstance();
+        jock.setSnapshotRetries(2);
+        try {
+            Stamped stamped = new Stamped();
+            stamped.versions = new long[]{1};
+            jock.snapshot(stamped);
+            fail("a change always in progress");
+        } catch (CopyException e) {
+            assertTrue(e.getMessage().contains("3 snapshot reads"));
+        } finally {
+            jock.setSnapshotRetries(8);
+        }
+    }
+
+    @Test
+    public void snapshot_holdsLockOnlyForOwnFields() throws Exception {
+        final ReentrantLock lock = new ReentrantLock();
+        final int[] locked = new int[1];
+        Jock jock = Jock.getInstance();
+        jock.registerSnapshotLock(Locked.class, new SnapshotLock<Locked>() {
+            @Override
+            public Lock readLock(Locked object) {
+                assertFalse("a parent lock is held while the child is read", lock.isHeldByCurrentThread());
+                locked[0]++;
+                return lock;
+            }
+        });
+
+        Locked root = new Locked();
+        root.child = new Locked();
+        root.child.child = new Locked();
+        Locked copy = (Locked) jock.snapshot(root);
+        assertNotNull(copy.child.child);
+        assertNotSame(root.child.child, copy.child.child);
+        assertEquals(3, locked[0]);
+        assertFalse(lock.isLocked());
+    }
+
+    @Test
+    public void snapshot_concurrentContainers() throws Exception {
+        Map<String, List<Integer>> map = new ConcurrentHashMap<>();
+        List<Integer> list = new CopyOnWriteArrayList<>();
+        list.add(1);
+        list.add(2);
+        map.put("a", list);
+
+        @SuppressWarnings("unchecked")
+        Map<String, List<Integer>> copy = (Map<String, List<Integer>>) Jock.getInstance().snapshot(map);
+        assertEquals(ConcurrentHashMap.class, copy.getClass());
+        assertEquals(CopyOnWriteArrayList.class, copy.get("a").getClass());
+        assertNotSame(list, copy.get("a"));
+        assertEquals(list, copy.get("a"));
+    }
+}
@@ -0,0 +1,74 @@
+package com.fairysword.hanoi.codec;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * compress and decompress block frames with the default deflate codec
+ */
+public class CompressedFramesTest {
+
+    private static byte[] repetitive(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (i % 7);
+        }
+        return bytes;
+    }
+
+    @Test
+    public void roundTrip_severalBlocks() throws Exception {
+        byte[] raw = repetitive(3 * CompressedFrames.DEFAULT_BLOCK_SIZE + 123);
+        byte[] frame = CompressedFrames.compress(raw, new DeflateCodec(), CompressedFrames.DEFAULT_BLOCK_SIZE);
+
+        assertTrue(CompressedFrames.isCompressed(frame));
+        assertTrue(frame.length < raw.length / 10);
+        assertArrayEquals(raw, CompressedFrames.decompress(frame));
+    }
+
+    @Test
+    public void roundTrip_incompressibleBlocksStoredRaw() throws Exception {
+        byte[] raw = new byte[5000];
+        new Random(42).nextBytes(raw);
+        byte[] frame = CompressedFrames.compress(raw, new DeflateCodec(), 1024);
+
+        assertTrue(frame.length <= 16 + 5 * 8 + raw.length);
+        assertArrayEquals(raw, CompressedFrames.decompress(frame));
+    }
+
+    @Test
+    public void decompress_rejectsCorruptedLength() throws Exception {
+        byte[] frame = CompressedFrames.compress(repetitive(1000), new DeflateCodec(), 1024);
+        assertRejected(withInt(frame, 8, -1));
+        assertRejected(withInt(frame, 8, Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void decompress_rejectsTruncatedFrame() throws Exception {
+        byte[] frame = CompressedFrames.compress(repetitive(100000), new DeflateCodec(), 1024);
+        assertRejected(Arrays.copyOf(frame, frame.length / 2));
+    }
+
+    private static byte[] withInt(byte[] frame, int offset, int value) {
+        byte[] copy = frame.clone();
+        copy[offset] = (byte) (value >>> 24);
+        copy[offset + 1] = (byte) (value >>> 16);
+        copy[offset + 2] = (byte) (value >>> 8);
+        copy[offset + 3] = (byte) value;
+        return copy;
+    }
+
+    private static void assertRejected(byte[] frame) {
+        try {
+            CompressedFrames.decompress(frame);
+            fail("corrupted frame accepted");
+        } catch (IOException expected) {
+        }
+    }
+
+}
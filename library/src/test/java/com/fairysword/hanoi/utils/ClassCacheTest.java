@@ -0,0 +1,106 @@
+package com.fairysword.hanoi.utils;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * lookups, eviction and weak keys of the class keyed cache
+ */
+public class ClassCacheTest {
+
+    public static class Sample {
+    }
+
+    @Test
+    public void putIfAbsent_keepsFirstValue() {
+        ClassCache<String> cache = new ClassCache<>("test");
+        assertNull(cache.get(String.class));
+        assertEquals("first", cache.putIfAbsent(String.class, "first"));
+        assertEquals("first", cache.putIfAbsent(String.class, "second"));
+        assertEquals("first", cache.get(String.class));
+
+        cache.clear();
+        assertNull(cache.get(String.class));
+        assertEquals(0, cache.stats().size);
+    }
+
+    @Test
+    public void putIfAbsent_growsPastInitialCapacity() {
+        ClassCache<Integer> cache = new ClassCache<>("test");
+        Class<?>[] classes = {String.class, Integer.class, Long.class, Short.class, Byte.class, Character.class,
+                Boolean.class, Float.class, Double.class, Object.class, Number.class, Thread.class};
+        for (int round = 0; round < 8; round++) {
+            for (int i = 0; i < classes.length; i++) {
+                cache.putIfAbsent(classes[i], i);
+            }
+        }
+        for (int i = 0; i < classes.length; i++) {
+            assertEquals(Integer.valueOf(i), cache.get(classes[i]));
+        }
+        assertEquals(classes.length, cache.stats().size);
+    }
+
+    @Test
+    public void setMaxSize_evictsOldest() {
+        ClassCache<String> cache = new ClassCache<>("test");
+        cache.putIfAbsent(String.class, "string");
+        cache.putIfAbsent(Integer.class, "integer");
+        cache.putIfAbsent(Long.class, "long");
+
+        cache.setMaxSize(2);
+        assertNull(cache.get(String.class));
+        assertEquals("integer", cache.get(Integer.class));
+
+        cache.putIfAbsent(Short.class, "short");
+        assertNull(cache.get(Integer.class));
+        assertEquals("long", cache.get(Long.class));
+        assertEquals("short", cache.get(Short.class));
+        assertEquals(2, cache.stats().size);
+    }
+
+    @Test
+    public void unloadedClassDropsOut() throws Exception {
+        ClassCache<Object> cache = new ClassCache<>("test");
+        cache.putIfAbsent(String.class, "kept");
+        putForeignClass(cache);
+
+        for (int i = 0; i < 50 && cache.stats().size > 1; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertEquals(1, cache.stats().size);
+        assertEquals("kept", cache.get(String.class));
+    }
+
+    private static void putForeignClass(ClassCache<Object> cache) throws Exception {
+        Class<?> foreign = new SampleLoader().loadSample();
+        assertNotSame(Sample.class, foreign);
+        cache.putIfAbsent(foreign, "foreign");
+        assertNotNull(cache.get(foreign));
+    }
+
+    private static final class SampleLoader extends ClassLoader {
+        SampleLoader() {
+            super(ClassCacheTest.class.getClassLoader());
+        }
+
+        Class<?> loadSample() throws IOException {
+            String name = Sample.class.getName();
+            try (InputStream in = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[4096];
+                for (int n; (n = in.read(buffer)) > 0; ) {
+                    out.write(buffer, 0, n);
+                }
+                byte[] bytes = out.toByteArray();
+                return defineClass(name, bytes, 0, bytes.length);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.fairysword.hanoi.processor;
+
+import java.util.List;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+
+/**
+ * A class annotated with {@code Generate} and its fields
+ */
+final class ClassModel {
+
+    final String packageName;
+    final String qualifiedName;
+    final String flatName;
+    final boolean hasNoArgConstructor;
+    final List<FieldModel> fields;
+
+    ClassModel(ProcessingEnvironment env, TypeElement type, List<FieldModel> fields) {
+        PackageElement packageElement = env.getElementUtils().getPackageOf(type);
+        this.packageName = packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+        this.qualifiedName = type.getQualifiedName().toString();
+        String binaryName = env.getElementUtils().getBinaryName(type).toString();
+        this.flatName = packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1);
+        this.hasNoArgConstructor = hasNoArgConstructor(type);
+        this.fields = fields;
+    }
+
+    String generatedName(String suffix) {
+        return packageName.isEmpty() ? flatName + suffix : packageName + "." + flatName + suffix;
+    }
+
+    String generatedSimpleName(String suffix) {
+        return flatName + suffix;
+    }
+
+    /**
+     * @param target the expression of the instance
+     * @param field  a field that can be accessed directly
+     * @return the expression of the field on the instance
+     */
+    String access(String target, FieldModel field) {
+        if (field.declaring.equals(qualifiedName)) {
+            return target + "." + field.name;
+        }
+        return "((" + field.declaring + ") " + target + ")." + field.name;
+    }
+
+    private static boolean hasNoArgConstructor(TypeElement type) {
+        for (Element member : type.getEnclosedElements()) {
+            if (member.getKind() == ElementKind.CONSTRUCTOR && ((ExecutableElement) member).getParameters().isEmpty()) {
+                return !member.getModifiers().contains(Modifier.PRIVATE);
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.fairysword.hanoi.processor;
+
+/**
+ * Writes the {@code GeneratedCopier} of a class
+ */
+final class CopierWriter extends SourceWriter {
+
+    CopierWriter(ClassModel model) {
+        super(model);
+    }
+
+    @Override
+    String write() {
+        header(HanoiProcessor.COPIER_SUFFIX, "com.fairysword.hanoi.generated.GeneratedCopier");
+        boolean copiers = false;
+        for (int i = 0; i < model.fields.size(); i++) {
+            FieldModel field = model.fields.get(i);
+            if (field.copier != null) {
+                out.append("    private static final ").append(field.copier).append(" C_").append(i)
+                        .append(" = new ").append(field.copier).append("();\n");
+                copiers = true;
+            }
+        }
+        if (copiers) {
+            out.append("\n");
+        }
+
+        out.append("    @Override\n")
+                .append("    public ").append(model.qualifiedName).append(" copy(com.fairysword.hanoi.Jock jock, ")
+                .append(model.qualifiedName).append(" original, DeepCopier deep) throws com.fairysword.hanoi.CopyException {\n");
+        instantiate("copy", true);
+
+        boolean reflected = hasReflectedFields();
+        String indent = reflected ? "            " : "        ";
+        if (reflected) {
+            out.append("        try {\n");
+        }
+        for (int i = 0; i < model.fields.size(); i++) {
+            FieldModel field = model.fields.get(i);
+            if ("SKIP".equals(field.policy)) {
+                continue;
+            }
+            String value = field.direct ? model.access("original", field) : "F_" + i + ".get(original)";
+            if ("DEEP".equals(field.policy)) {
+                value = "deep.copy(" + value + ")";
+            } else if ("CUSTOM".equals(field.policy)) {
+                value = "C_" + i + ".copy(jock, " + value + ")";
+            }
+
+            out.append(indent);
+            if (field.direct) {
+                boolean cast = !"SHALLOW".equals(field.policy);
+                out.append(model.access("copy", field)).append(" = ")
+                        .append(cast ? "(" + boxedErasure(field) + ") " : "").append(value).append(";\n");
+            } else {
+                out.append("F_").append(i).append(".set(copy, ").append(value).append(");\n");
+            }
+        }
+        if (reflected) {
+            out.append("        } catch (IllegalAccessException e) {\n")
+                    .append("            throw new com.fairysword.hanoi.CopyException(\"can not copy \" + e.getMessage());\n")
+                    .append("        }\n");
+        }
+        out.append("        return copy;\n    }\n\n}\n");
+        return out.toString();
+    }
+
+    private static String boxedErasure(FieldModel field) {
+        if (!field.isPrimitive()) {
+            return field.erasure;
+        }
+        switch (field.kind()) {
+            case INT:
+                return "Integer";
+            case CHAR:
+                return "Character";
+            default:
+                return accessorSuffix(field);
+        }
+    }
+
+}
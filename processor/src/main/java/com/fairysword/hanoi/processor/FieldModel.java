@@ -0,0 +1,40 @@
+package com.fairysword.hanoi.processor;
+
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * A non-static field of a generated class
+ */
+final class FieldModel {
+
+    final String declaring;
+    final String name;
+    final TypeMirror type;
+    final String erasure;
+    /**
+     * the generated code can read and assign the field without reflection
+     */
+    final boolean direct;
+    final String policy;
+    final String copier;
+
+    FieldModel(String declaring, String name, TypeMirror type, String erasure, boolean direct, String policy, String copier) {
+        this.declaring = declaring;
+        this.name = name;
+        this.type = type;
+        this.erasure = erasure;
+        this.direct = direct;
+        this.policy = policy;
+        this.copier = copier;
+    }
+
+    boolean isPrimitive() {
+        return type.getKind().isPrimitive();
+    }
+
+    TypeKind kind() {
+        return type.getKind();
+    }
+
+}
@@ -0,0 +1,279 @@
+package com.fairysword.hanoi.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates a copier and a Sedes reader / writer for every class annotated with
+ * {@code com.fairysword.hanoi.generated.Generate}, and one registry listing them
+ */
+public class HanoiProcessor extends AbstractProcessor {
+
+    private static final String GENERATE = "com.fairysword.hanoi.generated.Generate";
+    private static final String POLICY = "com.fairysword.hanoi.policy.Policy";
+    private static final String DEFAULT_REGISTRY = "com.fairysword.hanoi.generated.HanoiGeneratedRegistry";
+    private static final String OPTION_REGISTRY = "hanoi.registry";
+
+    static final String COPIER_SUFFIX = "$$HanoiCopier";
+    static final String SEDES_SUFFIX = "$$HanoiSedes";
+
+    private final List<String[]> registered = new ArrayList<>(); // class, copier, sedes
+    private boolean registryWritten = false;
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(GENERATE);
+    }
+
+    @Override
+    public Set<String> getSupportedOptions() {
+        return Collections.singleton(OPTION_REGISTRY);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement generate = processingEnv.getElementUtils().getTypeElement(GENERATE);
+        boolean found = false;
+        if (generate != null) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(generate)) {
+                found = true;
+                try {
+                    generate((TypeElement) element, annotation(element, GENERATE));
+                } catch (InvalidElementException e) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, e.getMessage(), e.element);
+                } catch (IOException e) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "can not write generated code: " + e, element);
+                }
+            }
+        }
+
+        // the generated sources trigger one more round, write the registry there so it is not the last one
+        if (!found && !registered.isEmpty() && !registryWritten) {
+            registryWritten = true;
+            try {
+                writeRegistry();
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "can not write hanoi registry: " + e);
+            }
+        }
+        return true;
+    }
+
+    private void generate(TypeElement type, AnnotationMirror generate) throws IOException, InvalidElementException {
+        if (type.getKind() != ElementKind.CLASS || type.getModifiers().contains(Modifier.ABSTRACT)) {
+            throw new InvalidElementException("@Generate needs a concrete class", type);
+        }
+        if (type.getModifiers().contains(Modifier.PRIVATE)) {
+            throw new InvalidElementException("@Generate class must not be private", type);
+        }
+        if (type.getNestingKind().isNested() && !type.getModifiers().contains(Modifier.STATIC)) {
+            throw new InvalidElementException("@Generate class must not be an inner class", type);
+        }
+
+        ClassModel model = new ClassModel(processingEnv, type, collectFields(type));
+        String qualifiedName = type.getQualifiedName().toString();
+        String copier = null;
+        String sedes = null;
+        if (booleanValue(generate, "copier")) {
+            copier = model.generatedName(COPIER_SUFFIX);
+            write(copier, new CopierWriter(model).write(), type);
+        }
+        if (booleanValue(generate, "sedes")) {
+            sedes = model.generatedName(SEDES_SUFFIX);
+            write(sedes, new SedesWriter(model).write(), type);
+        }
+        registered.add(new String[]{qualifiedName, copier, sedes});
+    }
+
+    private List<FieldModel> collectFields(TypeElement type) throws InvalidElementException {
+        List<FieldModel> fields = new ArrayList<>();
+        TypeElement current = type;
+        while (current != null && !current.getQualifiedName().contentEquals("java.lang.Object")) {
+            String name = current.getQualifiedName().toString();
+            if (name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("android.")) {
+                throw new InvalidElementException("@Generate class must not extend platform class " + name, type);
+            }
+
+            for (Element member : current.getEnclosedElements()) {
+                if (member.getKind() != ElementKind.FIELD || member.getModifiers().contains(Modifier.STATIC)) {
+                    continue;
+                }
+                fields.add(fieldModel(type, current, (VariableElement) member));
+            }
+
+            TypeMirror superclass = current.getSuperclass();
+            current = superclass.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+        }
+        return fields;
+    }
+
+    private FieldModel fieldModel(TypeElement type, TypeElement declaring, VariableElement field) throws InvalidElementException {
+        Set<Modifier> modifiers = field.getModifiers();
+        boolean samePackage = packageOf(type).equals(packageOf(declaring));
+        boolean direct = !modifiers.contains(Modifier.PRIVATE) && !modifiers.contains(Modifier.FINAL)
+                && (samePackage || modifiers.contains(Modifier.PUBLIC)) && isAccessible(declaring, type);
+
+        String policy;
+        String copier = null;
+        AnnotationMirror annotation = annotation(field, POLICY);
+        if (annotation != null) {
+            policy = enumValue(annotation, "value");
+            if ("CUSTOM".equals(policy)) {
+                copier = classValue(annotation, "copier");
+                if (copier == null || "com.fairysword.hanoi.policy.FieldCopier".equals(copier)) {
+                    throw new InvalidElementException("no copier declared for custom field", field);
+                }
+            }
+        } else if (modifiers.contains(Modifier.TRANSIENT)) {
+            policy = "SKIP";
+        } else if (field.asType().getKind().isPrimitive() || isImmutable(field.asType())) {
+            policy = "SHALLOW";
+        } else {
+            policy = "DEEP";
+        }
+
+        return new FieldModel(declaring.getQualifiedName().toString(), field.getSimpleName().toString(),
+                field.asType(), processingEnv.getTypeUtils().erasure(field.asType()).toString(), direct, policy, copier);
+    }
+
+    private boolean isAccessible(TypeElement declaring, TypeElement type) {
+        if (declaring.getModifiers().contains(Modifier.PRIVATE)) {
+            return false;
+        }
+        return declaring.getModifiers().contains(Modifier.PUBLIC) || packageOf(type).equals(packageOf(declaring));
+    }
+
+    private static boolean isImmutable(TypeMirror type) {
+        if (type.getKind() == TypeKind.DECLARED && ((DeclaredType) type).asElement().getKind() == ElementKind.ENUM) {
+            return true; // enum constants are shared
+        }
+        switch (type.toString()) {
+            case "java.lang.String":
+            case "java.lang.Boolean":
+            case "java.lang.Character":
+            case "java.lang.Byte":
+            case "java.lang.Short":
+            case "java.lang.Integer":
+            case "java.lang.Long":
+            case "java.lang.Float":
+            case "java.lang.Double":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private String packageOf(Element element) {
+        PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(element);
+        return packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+    }
+
+    private void writeRegistry() throws IOException {
+        String registry = processingEnv.getOptions().get(OPTION_REGISTRY);
+        if (registry == null || registry.isEmpty()) {
+            registry = DEFAULT_REGISTRY;
+        }
+        int dot = registry.lastIndexOf('.');
+
+        StringBuilder out = new StringBuilder();
+        if (dot > 0) {
+            out.append("package ").append(registry, 0, dot).append(";\n\n");
+        }
+        out.append("import com.fairysword.hanoi.generated.GeneratedCopier;\n")
+                .append("import com.fairysword.hanoi.generated.GeneratedRegistry;\n")
+                .append("import com.fairysword.hanoi.generated.GeneratedSedes;\n\n")
+                .append("import java.util.Map;\n\n")
+                .append("/**\n * Generated by HanoiProcessor, do not edit\n */\n")
+                .append("public final class ").append(registry.substring(dot + 1)).append(" implements GeneratedRegistry {\n\n")
+                .append("    @Override\n")
+                .append("    public void register(Map<Class<?>, GeneratedCopier<?>> copiers, Map<Class<?>, GeneratedSedes<?>> sedes) {\n");
+        for (String[] entry : registered) {
+            if (entry[1] != null) {
+                out.append("        copiers.put(").append(entry[0]).append(".class, new ").append(entry[1]).append("());\n");
+            }
+            if (entry[2] != null) {
+                out.append("        sedes.put(").append(entry[0]).append(".class, new ").append(entry[2]).append("());\n");
+            }
+        }
+        out.append("    }\n\n}\n");
+        write(registry, out.toString());
+    }
+
+    private void write(String qualifiedName, String source, Element... originatingElements) throws IOException {
+        try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, originatingElements).openWriter()) {
+            writer.write(source);
+        }
+    }
+
+    private static AnnotationMirror annotation(Element element, String annotationType) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotationType)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    private static AnnotationValue value(AnnotationMirror annotation, String name) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : annotation.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static boolean booleanValue(AnnotationMirror annotation, String name) {
+        AnnotationValue value = value(annotation, name);
+        return value == null || (Boolean) value.getValue();
+    }
+
+    private static String enumValue(AnnotationMirror annotation, String name) {
+        AnnotationValue value = value(annotation, name);
+        return value == null ? null : ((VariableElement) value.getValue()).getSimpleName().toString();
+    }
+
+    private static String classValue(AnnotationMirror annotation, String name) {
+        AnnotationValue value = value(annotation, name);
+        return value == null ? null : value.getValue().toString();
+    }
+
+    static final class InvalidElementException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final transient Element element;
+
+        InvalidElementException(String message, Element element) {
+            super(message);
+            this.element = element;
+        }
+    }
+
+}
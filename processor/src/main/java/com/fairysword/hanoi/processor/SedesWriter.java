@@ -0,0 +1,106 @@
+package com.fairysword.hanoi.processor;
+
+/**
+ * Writes the {@code GeneratedSedes} of a class, all non-static fields in declaration order
+ */
+final class SedesWriter extends SourceWriter {
+
+    SedesWriter(ClassModel model) {
+        super(model);
+    }
+
+    @Override
+    String write() {
+        header(HanoiProcessor.SEDES_SUFFIX, "com.fairysword.hanoi.generated.GeneratedSedes");
+        boolean reflected = hasReflectedFields();
+        String indent = reflected ? "            " : "        ";
+
+        out.append("    @Override\n")
+                .append("    public void write(android.os.Parcel parcel, ").append(model.qualifiedName).append(" value, ValueWriter writer) {\n");
+        if (reflected) {
+            out.append("        try {\n");
+        }
+        for (int i = 0; i < model.fields.size(); i++) {
+            FieldModel field = model.fields.get(i);
+            String value = field.direct ? model.access("value", field)
+                    : "F_" + i + ".get" + (field.isPrimitive() ? accessorSuffix(field) : "") + "(value)";
+            out.append(indent).append(writeStatement(field, value)).append("\n");
+        }
+        if (reflected) {
+            out.append("        } catch (IllegalAccessException e) {\n")
+                    .append("            throw new IllegalStateException(e);\n")
+                    .append("        }\n");
+        }
+        out.append("    }\n\n");
+
+        out.append("    @Override\n")
+                .append("    public ").append(model.qualifiedName)
+                .append(" read(android.os.Parcel parcel, ValueReader reader) throws ClassNotFoundException {\n");
+        instantiate("value", false);
+        if (reflected) {
+            out.append("        try {\n");
+        }
+        for (int i = 0; i < model.fields.size(); i++) {
+            FieldModel field = model.fields.get(i);
+            String read = readExpression(field);
+            out.append(indent);
+            if (field.direct) {
+                out.append(model.access("value", field)).append(" = ").append(read).append(";\n");
+            } else {
+                out.append("F_").append(i).append(".set").append(field.isPrimitive() ? accessorSuffix(field) : "")
+                        .append("(value, ").append(read).append(");\n");
+            }
+        }
+        if (reflected) {
+            out.append("        } catch (IllegalAccessException e) {\n")
+                    .append("            throw new IllegalStateException(e);\n")
+                    .append("        }\n");
+        }
+        out.append("        return value;\n    }\n\n}\n");
+        return out.toString();
+    }
+
+    private static String writeStatement(FieldModel field, String value) {
+        switch (field.kind()) {
+            case BOOLEAN:
+                return "parcel.writeInt(" + value + " ? 1 : 0);";
+            case BYTE:
+            case SHORT:
+            case CHAR:
+            case INT:
+                return "parcel.writeInt(" + value + ");";
+            case LONG:
+                return "parcel.writeLong(" + value + ");";
+            case FLOAT:
+                return "parcel.writeFloat(" + value + ");";
+            case DOUBLE:
+                return "parcel.writeDouble(" + value + ");";
+            default:
+                return "writer.write(parcel, " + value + ");";
+        }
+    }
+
+    private static String readExpression(FieldModel field) {
+        switch (field.kind()) {
+            case BOOLEAN:
+                return "parcel.readInt() != 0";
+            case BYTE:
+                return "(byte) parcel.readInt()";
+            case SHORT:
+                return "(short) parcel.readInt()";
+            case CHAR:
+                return "(char) parcel.readInt()";
+            case INT:
+                return "parcel.readInt()";
+            case LONG:
+                return "parcel.readLong()";
+            case FLOAT:
+                return "parcel.readFloat()";
+            case DOUBLE:
+                return "parcel.readDouble()";
+            default:
+                return "(" + field.erasure + ") reader.read(parcel)";
+        }
+    }
+
+}
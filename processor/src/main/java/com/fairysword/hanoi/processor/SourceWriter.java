@@ -0,0 +1,77 @@
+package com.fairysword.hanoi.processor;
+
+/**
+ * Base of the generated source writers
+ */
+abstract class SourceWriter {
+
+    final ClassModel model;
+    final StringBuilder out = new StringBuilder();
+
+    SourceWriter(ClassModel model) {
+        this.model = model;
+    }
+
+    abstract String write();
+
+    void header(String suffix, String implemented) {
+        if (!model.packageName.isEmpty()) {
+            out.append("package ").append(model.packageName).append(";\n\n");
+        }
+        out.append("/**\n * Generated by HanoiProcessor, do not edit\n */\n")
+                .append("@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n")
+                .append("public final class ").append(model.generatedSimpleName(suffix))
+                .append(" implements ").append(implemented).append("<").append(model.qualifiedName).append("> {\n\n");
+        for (int i = 0; i < model.fields.size(); i++) {
+            FieldModel field = model.fields.get(i);
+            if (!field.direct) {
+                out.append("    private static final java.lang.reflect.Field F_").append(i)
+                        .append(" = com.fairysword.hanoi.generated.Generated.field(")
+                        .append(field.declaring).append(".class, \"").append(field.name).append("\");\n");
+            }
+        }
+        if (hasReflectedFields()) {
+            out.append("\n");
+        }
+    }
+
+    /**
+     * @param variable the name of the instance variable
+     * @param recycle  take a recycled instance first, like {@code InstancePool.obtain}
+     */
+    void instantiate(String variable, boolean recycle) {
+        String factory = recycle ? "obtain" : "newInstance";
+        if (model.hasNoArgConstructor && !recycle) {
+            out.append("        ").append(model.qualifiedName).append(" ").append(variable)
+                    .append(" = new ").append(model.qualifiedName).append("();\n");
+        } else if (model.hasNoArgConstructor) {
+            out.append("        ").append(model.qualifiedName).append(" ").append(variable).append(" = (").append(model.qualifiedName)
+                    .append(") com.fairysword.hanoi.instance.InstancePool.recycled(").append(model.qualifiedName).append(".class);\n")
+                    .append("        if (").append(variable).append(" == null) {\n")
+                    .append("            ").append(variable).append(" = new ").append(model.qualifiedName).append("();\n")
+                    .append("        }\n");
+        } else {
+            out.append("        ").append(model.qualifiedName).append(" ").append(variable).append(" = (").append(model.qualifiedName)
+                    .append(") com.fairysword.hanoi.instance.InstancePool.").append(factory).append("(")
+                    .append(model.qualifiedName).append(".class);\n");
+        }
+    }
+
+    boolean hasReflectedFields() {
+        for (FieldModel field : model.fields) {
+            if (!field.direct) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the suffix of the typed {@link java.lang.reflect.Field} accessors, like Int of getInt
+     */
+    static String accessorSuffix(FieldModel field) {
+        String kind = field.kind().name().toLowerCase();
+        return Character.toUpperCase(kind.charAt(0)) + kind.substring(1);
+    }
+
+}
@@ -0,0 +1,173 @@
+package com.fairysword.hanoi.processor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import static org.junit.Assert.*;
+
+/**
+ * runs the processor on annotated sources and checks the generated code. the library is not on the
+ * classpath, so only the processing rounds run and only the errors reported by the processor count
+ */
+public class HanoiProcessorTest {
+
+    private static final String ANNOTATIONS = ""
+            + "package com.fairysword.hanoi.generated;\n"
+            + "public @interface Generate {\n"
+            + "    boolean copier() default true;\n"
+            + "    boolean sedes() default true;\n"
+            + "}\n";
+    private static final String POLICY = ""
+            + "package com.fairysword.hanoi.policy;\n"
+            + "public @interface Policy {\n"
+            + "    CopyPolicy value();\n"
+            + "    Class<?> copier() default Object.class;\n"
+            + "}\n";
+    private static final String COPY_POLICY = ""
+            + "package com.fairysword.hanoi.policy;\n"
+            + "public enum CopyPolicy { DEEP, SHALLOW, SKIP, CUSTOM }\n";
+
+    private File output;
+    private final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+
+    @Before
+    public void setUp() throws IOException {
+        output = Files.createTempDirectory("hanoi-processor").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        delete(output);
+    }
+
+    @Test
+    public void generatesCopierSedesAndRegistry() throws Exception {
+        process("sample/Item", ""
+                + "package sample;\n"
+                + "import com.fairysword.hanoi.generated.Generate;\n"
+                + "import com.fairysword.hanoi.policy.CopyPolicy;\n"
+                + "import com.fairysword.hanoi.policy.Policy;\n"
+                + "@Generate\n"
+                + "public class Item {\n"
+                + "    int count;\n"
+                + "    String name;\n"
+                + "    java.util.List<Item> children;\n"
+                + "    transient Object cache;\n"
+                + "    @Policy(CopyPolicy.SHALLOW) Object shared;\n"
+                + "    private long secret;\n"
+                + "}\n");
+        assertEquals("[]", errors());
+
+        String copier = generated("sample/Item$$HanoiCopier.java");
+        assertTrue(copier.contains("copy.count = original.count;"));
+        assertTrue(copier.contains("copy.children = (java.util.List) deep.copy(original.children);"));
+        assertTrue(copier.contains("copy.shared = original.shared;"));
+        assertFalse(copier.contains("cache"));
+        // a private field goes through its field handle
+        assertTrue(copier.contains("F_5.set(copy, F_5.get(original));"));
+
+        String sedes = generated("sample/Item$$HanoiSedes.java");
+        assertTrue(sedes.contains("write(android.os.Parcel parcel, sample.Item value, ValueWriter writer)"));
+        assertTrue(sedes.contains("read(android.os.Parcel parcel, ValueReader reader)"));
+
+        String registry = generated("com/fairysword/hanoi/generated/HanoiGeneratedRegistry.java");
+        assertTrue(registry.contains("copiers.put(sample.Item.class, new sample.Item$$HanoiCopier());"));
+        assertTrue(registry.contains("sedes.put(sample.Item.class, new sample.Item$$HanoiSedes());"));
+    }
+
+    @Test
+    public void generatesOnlyTheRequestedCode() throws Exception {
+        process("sample/Plain", ""
+                + "package sample;\n"
+                + "@com.fairysword.hanoi.generated.Generate(sedes = false)\n"
+                + "public class Plain {\n"
+                + "    int count;\n"
+                + "}\n");
+        assertEquals("[]", errors());
+
+        assertTrue(new File(output, "sample/Plain$$HanoiCopier.java").exists());
+        assertFalse(new File(output, "sample/Plain$$HanoiSedes.java").exists());
+        assertFalse(generated("com/fairysword/hanoi/generated/HanoiGeneratedRegistry.java").contains("sedes.put("));
+    }
+
+    @Test
+    public void rejectsAbstractClasses() throws Exception {
+        process("sample/Shape", ""
+                + "package sample;\n"
+                + "@com.fairysword.hanoi.generated.Generate\n"
+                + "public abstract class Shape {\n"
+                + "    int sides;\n"
+                + "}\n");
+
+        assertTrue(errors().contains("@Generate needs a concrete class"));
+    }
+
+    private void process(String path, String source) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        StandardJavaFileManager files = compiler.getStandardFileManager(diagnostics, null, Charset.forName("UTF-8"));
+        List<JavaFileObject> sources = Arrays.asList(source("com/fairysword/hanoi/generated/Generate", ANNOTATIONS),
+                source("com/fairysword/hanoi/policy/Policy", POLICY),
+                source("com/fairysword/hanoi/policy/CopyPolicy", COPY_POLICY),
+                source(path, source));
+        List<String> options = Arrays.asList("-proc:only", "-s", output.getPath());
+        JavaCompiler.CompilationTask task = compiler.getTask(null, files, diagnostics, options, null, sources);
+        task.setProcessors(Collections.singletonList(new HanoiProcessor()));
+        task.call();
+        files.close();
+    }
+
+    private String errors() {
+        List<String> errors = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR && "compiler.err.proc.messager".equals(diagnostic.getCode())) {
+                errors.add(diagnostic.getMessage(null));
+            }
+        }
+        return errors.toString();
+    }
+
+    private String generated(String path) throws IOException {
+        File file = new File(output, path);
+        assertTrue("not generated: " + path, file.exists());
+        return new String(Files.readAllBytes(file.toPath()), "UTF-8");
+    }
+
+    private static JavaFileObject source(String path, final String code) {
+        return new SimpleJavaFileObject(URI.create("string:///" + path + ".java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return code;
+            }
+        };
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+}